@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.policy.mock.cache.RenderCoalescer;
+import io.gravitee.policy.mock.cache.ResponseCache;
+import io.gravitee.policy.mock.cache.TemplateDependencies;
+import io.gravitee.policy.mock.configuration.BudgetConfiguration;
+import io.gravitee.policy.mock.configuration.HttpHeader;
+import io.gravitee.policy.mock.configuration.MockPolicyConfiguration;
+import io.gravitee.policy.mock.configuration.OffloadConfiguration;
+import io.gravitee.policy.mock.configuration.ResponseCookie;
+import io.gravitee.policy.mock.configuration.TimingConfiguration;
+import io.gravitee.policy.mock.render.RenderBudget;
+import io.gravitee.policy.mock.render.RenderExecutor;
+import io.gravitee.policy.mock.render.RenderStatistics;
+import io.gravitee.policy.mock.utils.CookieUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What is computed once from a {@link MockPolicyConfiguration} and shared by every request going through it.
+ *
+ * A definition is held by its configuration, so it is released when the API is undeployed, and resolved by a
+ * volatile read once it is built.
+ *
+ * @author GraviteeSource Team
+ */
+final class MockDefinition {
+
+    private final TemplateDependencies dependencies;
+
+    private final List<String> staticCookies = new ArrayList<>();
+
+    private final List<ResponseCookie> dynamicCookies = new ArrayList<>();
+
+    private final ResponseCache cache;
+
+    private final RenderCoalescer coalescer;
+
+    private final RenderExecutor renderExecutor;
+
+    private final RenderBudget renderBudget;
+
+    private final RenderStatistics statistics;
+
+    private MockDefinition(MockPolicyConfiguration configuration) {
+        List<String> templates = new ArrayList<>();
+        List<String> varyHeaders = new ArrayList<>();
+        templates.add(configuration.getContent());
+
+        boolean dynamicVary = false;
+        if (configuration.getHeaders() != null) {
+            for (HttpHeader header : configuration.getHeaders()) {
+                templates.add(header.getValue());
+                if (HttpHeaders.VARY.equalsIgnoreCase(header.getName()) && header.getValue() != null) {
+                    if (header.getValue().indexOf('{') >= 0) {
+                        dynamicVary = true;
+                    }
+                    for (String name : header.getValue().split(",")) {
+                        if (!name.trim().isEmpty()) {
+                            varyHeaders.add(name.trim());
+                        }
+                    }
+                }
+            }
+        }
+
+        // Static cookies are serialized once for all
+        if (configuration.getCookies() != null) {
+            for (ResponseCookie cookie : configuration.getCookies()) {
+                if (cookie.getName() == null || cookie.getName().trim().isEmpty()) {
+                    continue;
+                }
+                if (CookieUtils.isDynamic(cookie)) {
+                    templates.add(cookie.getValue());
+                    dynamicCookies.add(cookie);
+                } else {
+                    try {
+                        staticCookies.add(CookieUtils.toSetCookie(cookie, cookie.getValue()));
+                    } catch (IllegalArgumentException iae) {
+                        // A name or a value which can not be sent as is, the cookie is not set
+                    }
+                }
+            }
+        }
+
+        this.dependencies = TemplateDependencies.of(templates, varyHeaders);
+        this.cache = (configuration.getCache() != null && configuration.getCache().isEnabled()
+                && dependencies.isCacheable() && !dynamicVary)
+                ? new ResponseCache(configuration.getCache().getMaxEntries()) : null;
+        this.coalescer = (configuration.isCoalesce() && dependencies.isCacheable() && !dynamicVary)
+                ? new RenderCoalescer() : null;
+
+        final BudgetConfiguration budget = configuration.getBudget();
+        this.renderBudget = (budget != null && budget.getTimeout() > 0)
+                ? new RenderBudget(budget.getTimeout(), budget.getStatus(), budget.getFailureThreshold(), budget.getOpenDuration())
+                : null;
+
+        // Renders are run by the worker pool when they are expensive, or always if they are time bounded
+        final OffloadConfiguration offload = configuration.getOffload();
+        final boolean offloadEnabled = offload != null && offload.isEnabled();
+        if (offloadEnabled || renderBudget != null) {
+            final OffloadConfiguration pool = (offload != null) ? offload : new OffloadConfiguration();
+            this.renderExecutor = new RenderExecutor(
+                    (configuration.getContent() != null) ? configuration.getContent().length() : 0,
+                    offloadEnabled ? pool.getTemplateSizeThreshold() : 0,
+                    offloadEnabled ? pool.getRenderTimeThreshold() : 0, TimeUnit.MILLISECONDS,
+                    pool.getPoolSize(), pool.getQueueSize());
+        } else {
+            this.renderExecutor = null;
+        }
+
+        final TimingConfiguration timing = configuration.getTiming();
+        this.statistics = (timing != null && timing.isEnabled())
+                ? new RenderStatistics(timing.getBlockedThreshold(), TimeUnit.MILLISECONDS) : null;
+    }
+
+    static MockDefinition of(MockPolicyConfiguration configuration) {
+        Object definition = configuration.definition();
+        if (definition == null) {
+            // Only the first requests of a configuration may contend, on that configuration only
+            synchronized (configuration) {
+                definition = configuration.definition();
+                if (definition == null) {
+                    definition = new MockDefinition(configuration);
+                    configuration.definition(definition);
+                }
+            }
+        }
+        return (MockDefinition) definition;
+    }
+
+    TemplateDependencies getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * @return the <code>Set-Cookie</code> header values of the cookies whose value is not an expression.
+     */
+    List<String> getStaticCookies() {
+        return staticCookies;
+    }
+
+    /**
+     * @return the cookies whose value is an expression to evaluate for each request.
+     */
+    List<ResponseCookie> getDynamicCookies() {
+        return dynamicCookies;
+    }
+
+    /**
+     * @return the response cache, or <code>null</code> if caching is disabled or the templates are not cacheable.
+     */
+    ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the render coalescer, or <code>null</code> if coalescing is disabled or the templates are not cacheable.
+     */
+    RenderCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * @return the executor to which renders are offloaded, or <code>null</code> if neither offloading nor a render
+     * budget are enabled.
+     */
+    RenderExecutor getRenderExecutor() {
+        return renderExecutor;
+    }
+
+    /**
+     * @return the render time budget, or <code>null</code> if renders are not time bounded.
+     */
+    RenderBudget getRenderBudget() {
+        return renderBudget;
+    }
+
+    /**
+     * @return the render timings of the policy, with their per-phase histograms, or <code>null</code> if timings are
+     * disabled.
+     */
+    RenderStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return <code>true</code> if responses are looked up or shared by the {@link io.gravitee.policy.mock.cache.CacheKey}
+     * of the request.
+     */
+    boolean isKeyed() {
+        return cache != null || coalescer != null;
+    }
+}
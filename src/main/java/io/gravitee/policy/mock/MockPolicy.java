@@ -31,12 +31,28 @@ import io.gravitee.gateway.api.proxy.ProxyResponse;
 import io.gravitee.gateway.api.stream.ReadStream;
 import io.gravitee.policy.api.PolicyChain;
 import io.gravitee.policy.api.annotations.OnRequest;
+import io.gravitee.policy.mock.body.BodyBytes;
+import io.gravitee.policy.mock.body.BodyParser;
+import io.gravitee.policy.mock.body.RequestInflater;
+import io.gravitee.policy.mock.cache.CacheKey;
+import io.gravitee.policy.mock.cache.CachedResponse;
+import io.gravitee.policy.mock.cache.RenderCoalescer;
+import io.gravitee.policy.mock.cache.ResponseCache;
 import io.gravitee.policy.mock.configuration.HttpHeader;
 import io.gravitee.policy.mock.configuration.MockPolicyConfiguration;
+import io.gravitee.policy.mock.configuration.ResponseCookie;
 import io.gravitee.policy.mock.el.EvaluableRequest;
+import io.gravitee.policy.mock.render.CallerContext;
+import io.gravitee.policy.mock.render.RenderBudget;
+import io.gravitee.policy.mock.render.RenderExecutor;
+import io.gravitee.policy.mock.render.RenderStatistics;
+import io.gravitee.policy.mock.render.RenderTimings;
+import io.gravitee.policy.mock.utils.CookieUtils;
 import io.gravitee.policy.mock.utils.StringUtils;
 
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -51,8 +67,11 @@ public class MockPolicy {
      */
     private final MockPolicyConfiguration mockPolicyConfiguration;
 
+    private final MockDefinition mockDefinition;
+
     public MockPolicy(MockPolicyConfiguration mockPolicyConfiguration) {
         this.mockPolicyConfiguration = mockPolicyConfiguration;
+        this.mockDefinition = MockDefinition.of(mockPolicyConfiguration);
     }
 
     @OnRequest
@@ -87,26 +106,195 @@ public class MockPolicy {
 
         private Handler<ProxyResponse> proxyResponseHandler;
         private final ExecutionContext executionContext;
+        private final RenderTimings timings;
+        private final BodyParser formParser;
+        private final RequestInflater inflater;
+        private final BodyBytes inflatedContent;
         private Buffer content;
+        private int rejectedStatus;
 
         MockProxyConnection(final ExecutionContext executionContext) {
             this.executionContext = executionContext;
+            this.timings = (mockDefinition.getStatistics() != null || mockDefinition.getRenderExecutor() != null)
+                    ? new RenderTimings() : RenderTimings.DISABLED;
+            this.formParser = mockDefinition.getDependencies().readsForm()
+                    ? BodyParser.of(executionContext.request().headers().getFirst(HttpHeaders.CONTENT_TYPE)) : null;
+            // Encoded bodies are only inflated if templates read them
+            this.inflater = (formParser != null || mockDefinition.getDependencies().readsContent())
+                    ? RequestInflater.of(executionContext.request().headers().getFirst(HttpHeaders.CONTENT_ENCODING),
+                            mockPolicyConfiguration.getMaxInflateRatio())
+                    : null;
+            this.inflatedContent = (inflater != null && mockDefinition.getDependencies().readsContent())
+                    ? new BodyBytes() : null;
         }
 
         @Override
         public ProxyConnection write(Buffer chunk) {
-            if (content == null) {
-                content = Buffer.buffer();
+            if (rejectedStatus != 0) {
+                return this;
+            }
+
+            final long start = timings.start();
+            if (inflater != null) {
+                // Inflated bytes go straight from the inflater buffer to the form parser and the body
+                try {
+                    inflater.inflate(chunk.getBytes(), this::inflated);
+                } catch (RequestInflater.InflateException ie) {
+                    reject(ie);
+                }
+                timings.lap(RenderTimings.Phase.BUFFERING, start);
+                return this;
+            }
+
+            // Form bodies are parsed as they arrive, the body itself is only kept if templates read it
+            if (formParser != null) {
+                formParser.write(chunk.getBytes());
+            }
+            if (mockDefinition.getDependencies().readsContent()) {
+                if (content == null) {
+                    content = Buffer.buffer();
+                }
+                content.appendBuffer(chunk);
             }
-            content.appendBuffer(chunk);
+            timings.lap(RenderTimings.Phase.BUFFERING, start);
             return this;
         }
 
+        private void inflated(byte[] bytes, int offset, int length) {
+            if (formParser != null) {
+                formParser.write(bytes, offset, length);
+            }
+            if (inflatedContent != null) {
+                inflatedContent.write(bytes, offset, length);
+            }
+        }
+
+        private void reject(RequestInflater.InflateException ie) {
+            rejectedStatus = ie.isTooLarge()
+                    ? HttpStatusCode.REQUEST_ENTITY_TOO_LARGE_413 : HttpStatusCode.BAD_REQUEST_400;
+            content = null;
+        }
+
         @Override
         public void end() {
-            proxyResponseHandler.handle(
-                    new MockClientResponse(executionContext,
-                            new EvaluableRequest(executionContext.request(), (content != null) ? content.toString() : null)));
+            if (inflater != null && rejectedStatus == 0) {
+                try {
+                    inflater.finish();
+                } catch (RequestInflater.InflateException ie) {
+                    reject(ie);
+                }
+            }
+            if (rejectedStatus != 0) {
+                proxyResponseHandler.handle(new MockClientResponse(rejectedStatus));
+                return;
+            }
+
+            if (formParser != null) {
+                formParser.end();
+            }
+
+            final EvaluableRequest request = (inflatedContent != null && inflatedContent.length() > 0)
+                    ? new EvaluableRequest(executionContext.request(), inflatedContent.toByteArray(),
+                            mockPolicyConfiguration.getMaxXmlSize(), formParser)
+                    : new EvaluableRequest(executionContext.request(), content,
+                            mockPolicyConfiguration.getMaxXmlSize(), formParser);
+
+            final CacheKey key = mockDefinition.isKeyed() ? mockDefinition.getDependencies().key(request) : null;
+            final ResponseCache cache = mockDefinition.getCache();
+            if (cache != null) {
+                CachedResponse cachedResponse = cache.get(key);
+                if (cachedResponse != null) {
+                    proxyResponseHandler.handle(new MockClientResponse(cachedResponse));
+                    return;
+                }
+            }
+
+            final RenderExecutor renderExecutor = mockDefinition.getRenderExecutor();
+            final RenderBudget budget = mockDefinition.getRenderBudget();
+            if (budget == null) {
+                // Expensive renders are run on a worker thread, and handed back to the context of the request
+                final CallerContext caller = CallerContext.capture();
+                final Runnable task = renderTask(request, key,
+                        response -> caller.run(() -> proxyResponseHandler.handle(response)));
+                if (renderExecutor == null || !renderExecutor.offload(task)) {
+                    task.run();
+                }
+                return;
+            }
+
+            if (budget.isOpen()) {
+                proxyResponseHandler.handle(new MockClientResponse(budget.getStatus()));
+                return;
+            }
+
+            // A render can only be abandoned if it is not run by the I/O thread, and the response is handed back
+            // to the context of the request whether it comes from the worker or from the budget timer
+            final CallerContext caller = CallerContext.capture();
+            final RenderBudget.Guard guard = budget.start(() -> caller.run(
+                    () -> proxyResponseHandler.handle(new MockClientResponse(budget.getStatus()))));
+            final Runnable task = renderTask(request, key, response -> {
+                if (guard.complete()) {
+                    caller.run(() -> proxyResponseHandler.handle(response));
+                }
+            });
+
+            final Future<?> render = renderExecutor.submit(guard.wrap(task));
+            if (render == null) {
+                // All the workers are busy, possibly with abandoned renders: never render without a time limit
+                if (guard.reject()) {
+                    proxyResponseHandler.handle(new MockClientResponse(budget.getStatus()));
+                }
+            } else {
+                guard.watch(render);
+            }
+        }
+
+        private Runnable renderTask(EvaluableRequest request, CacheKey key, Handler<ProxyResponse> responseHandler) {
+            if (key == null) {
+                return () -> responseHandler.handle(render(request));
+            }
+
+            final ResponseCache cache = mockDefinition.getCache();
+            final Supplier<CachedResponse> renderer = () -> {
+                MockClientResponse response = render(request);
+                CachedResponse rendered = new CachedResponse(response.status, response.headers, response.buffer);
+                if (cache != null && !response.evaluationFailed) {
+                    cache.put(key, rendered);
+                }
+                return rendered;
+            };
+
+            final RenderCoalescer coalescer = mockDefinition.getCoalescer();
+            if (coalescer == null) {
+                return () -> responseHandler.handle(new MockClientResponse(renderer.get()));
+            }
+
+            // Requests waiting for an in-flight render are completed from the thread of the rendering request, and
+            // handed back to their own context. A failed render is not run again by each of them.
+            final CallerContext caller = CallerContext.capture();
+            return () -> coalescer.render(key, renderer).whenComplete((rendered, throwable) -> caller.run(() ->
+                    responseHandler.handle((throwable == null) ? new MockClientResponse(rendered)
+                            : new MockClientResponse(HttpStatusCode.INTERNAL_SERVER_ERROR_500))));
+        }
+
+        private MockClientResponse render(EvaluableRequest request) {
+            final MockClientResponse response = new MockClientResponse(executionContext, request, timings);
+
+            final RenderExecutor renderExecutor = mockDefinition.getRenderExecutor();
+            if (renderExecutor != null) {
+                renderExecutor.record(timings.render());
+            }
+
+            final RenderStatistics statistics = mockDefinition.getStatistics();
+            if (statistics != null) {
+                statistics.record(timings);
+                for (RenderTimings.Phase phase : RenderTimings.Phase.values()) {
+                    executionContext.setAttribute(phase.attribute(), timings.get(phase));
+                }
+                executionContext.setAttribute(RenderTimings.ATTR_TOTAL, timings.render());
+            }
+
+            return response;
         }
 
         @Override
@@ -118,7 +306,7 @@ public class MockPolicy {
 
     class MockClientResponse implements ProxyResponse {
 
-        private final HttpHeaders headers = new HttpHeaders();
+        private final HttpHeaders headers;
 
         private Handler<Buffer> bodyHandler;
         private Handler<Void> endHandler;
@@ -126,11 +314,28 @@ public class MockPolicy {
 
         private Buffer buffer;
 
-        MockClientResponse(final ExecutionContext executionContext, final EvaluableRequest request) {
-            this.init(executionContext, request);
+        private boolean evaluationFailed;
+
+        MockClientResponse(final ExecutionContext executionContext, final EvaluableRequest request,
+                           final RenderTimings timings) {
+            this.headers = new HttpHeaders();
+            this.init(executionContext, request, timings);
+        }
+
+        MockClientResponse(final int status) {
+            this.status = status;
+            this.headers = new HttpHeaders();
+            this.headers.set(HttpHeaders.CONTENT_LENGTH, "0");
         }
 
-        private void init(ExecutionContext executionContext, EvaluableRequest request) {
+        MockClientResponse(final CachedResponse cachedResponse) {
+            this.status = cachedResponse.getStatus();
+            this.headers = cachedResponse.getHeaders();
+            this.buffer = cachedResponse.getBody();
+        }
+
+        private void init(ExecutionContext executionContext, EvaluableRequest request, RenderTimings timings) {
+            long mark = timings.start();
             status = mockPolicyConfiguration.getStatus();
             if (mockPolicyConfiguration.getHeaders() != null) {
                 mockPolicyConfiguration.getHeaders()
@@ -147,6 +352,7 @@ public class MockPolicy {
                                     }
                                 } catch (Exception ex) {
                                     // Do nothing
+                                    evaluationFailed = true;
                                     ex.printStackTrace();
                                 }
                             }
@@ -156,9 +362,25 @@ public class MockPolicy {
             String content = mockPolicyConfiguration.getContent();
             boolean hasContent = (content != null && content.length() > 0);
 
-            if (hasContent) {
+            if (hasContent || !mockDefinition.getDynamicCookies().isEmpty()) {
                 executionContext.getTemplateEngine().getTemplateContext()
                         .setVariable(REQUEST_VARIABLE, request);
+            }
+
+            for (String cookie : mockDefinition.getStaticCookies()) {
+                headers.add(HttpHeaders.SET_COOKIE, cookie);
+            }
+            for (ResponseCookie cookie : mockDefinition.getDynamicCookies()) {
+                try {
+                    String value = executionContext.getTemplateEngine().getValue(cookie.getValue(), String.class);
+                    headers.add(HttpHeaders.SET_COOKIE, CookieUtils.toSetCookie(cookie, value));
+                } catch (Exception ex) {
+                    evaluationFailed = true;
+                }
+            }
+            mark = timings.lap(RenderTimings.Phase.HEADERS, mark);
+
+            if (hasContent) {
 
                 String evaluatedContent = null;
 
@@ -166,20 +388,25 @@ public class MockPolicy {
                     evaluatedContent = executionContext.getTemplateEngine().getValue(content, String.class);
 
                     if (evaluatedContent == null) {
+                        evaluationFailed = true;
                         status = HttpStatusCode.INTERNAL_SERVER_ERROR_500;
                         evaluatedContent = new ELNullEvaluationException(content).getMessage();
                     }
                 }catch (Exception e) {
+                    evaluationFailed = true;
                     status = HttpStatusCode.INTERNAL_SERVER_ERROR_500;
                     evaluatedContent = new ExpressionEvaluationException(content).getMessage();
                 }
 
                 buffer = Buffer.buffer(evaluatedContent);
                 headers.set(HttpHeaders.CONTENT_LENGTH, Integer.toString(buffer.length()));
+                mark = timings.lap(RenderTimings.Phase.CONTENT, mark);
+
                 // Trying to discover content type
                 if (! headers.containsKey(HttpHeaders.CONTENT_TYPE)) {
                     headers.set(HttpHeaders.CONTENT_TYPE, getContentType(content));
                 }
+                timings.lap(RenderTimings.Phase.CONTENT_TYPE, mark);
             }
         }
 
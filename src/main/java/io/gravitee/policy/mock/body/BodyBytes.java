@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.body;
+
+import java.util.Arrays;
+
+/**
+ * The bytes of a request body, appended as they are inflated.
+ *
+ * @author GraviteeSource Team
+ */
+public class BodyBytes implements RequestInflater.Sink {
+
+    private byte[] bytes = new byte[1024];
+    private int length;
+
+    @Override
+    public void write(byte[] source, int offset, int count) {
+        if (length + count > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+        }
+        System.arraycopy(source, offset, bytes, length, count);
+        length += count;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the bytes of the body, the internal array itself if it is full.
+     */
+    public byte[] toByteArray() {
+        return (length == bytes.length) ? bytes : Arrays.copyOf(bytes, length);
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.body;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parse a request body incrementally, as its chunks arrive, without keeping the whole body in memory.
+ *
+ * @author GraviteeSource Team
+ */
+public interface BodyParser {
+
+    /**
+     * Maximum size, in bytes, kept for a single field value. Bytes beyond it are dropped.
+     */
+    int MAX_FIELD_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of fields, or parts, kept for a single body. Those beyond it are dropped.
+     */
+    int MAX_FIELDS = 1000;
+
+    /**
+     * Create the parser of a form body.
+     *
+     * @param contentType the content type of the request.
+     * @return the parser, or <code>null</code> if the body is not a form.
+     */
+    static BodyParser of(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+
+        String mediaType = contentType.split(";", 2)[0].trim();
+        if ("application/x-www-form-urlencoded".equalsIgnoreCase(mediaType)) {
+            return new FormUrlEncodedParser();
+        }
+        if ("multipart/form-data".equalsIgnoreCase(mediaType)) {
+            String boundary = MultipartParser.parameter(contentType, "boundary");
+            return (boundary != null && !boundary.isEmpty()) ? new MultipartParser(boundary) : null;
+        }
+        return null;
+    }
+
+    default void write(byte[] chunk) {
+        write(chunk, 0, chunk.length);
+    }
+
+    /**
+     * @param chunk a buffer only read for the duration of the call.
+     */
+    void write(byte[] chunk, int offset, int length);
+
+    void end();
+
+    /**
+     * @return the fields of the form, files excluded.
+     */
+    Map<String, List<String>> getFields();
+
+    /**
+     * @return the parts of the form, files included.
+     */
+    List<Part> getParts();
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.body;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The bytes of a field value, capped to {@link BodyParser#MAX_FIELD_SIZE}.
+ *
+ * @author GraviteeSource Team
+ */
+class FieldValue {
+
+    private byte[] bytes = new byte[64];
+    private int length;
+    private long size;
+
+    void append(byte[] source, int offset, int count) {
+        size += count;
+        int kept = Math.min(count, BodyParser.MAX_FIELD_SIZE - length);
+        if (kept <= 0) {
+            return;
+        }
+        if (length + kept > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.min(BodyParser.MAX_FIELD_SIZE, Math.max(bytes.length * 2, length + kept)));
+        }
+        System.arraycopy(source, offset, bytes, length, kept);
+        length += kept;
+    }
+
+    void append(byte b) {
+        size++;
+        if (length == BodyParser.MAX_FIELD_SIZE) {
+            return;
+        }
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.min(BodyParser.MAX_FIELD_SIZE, bytes.length * 2));
+        }
+        bytes[length++] = b;
+    }
+
+    /**
+     * @return the number of bytes appended, dropped ones included.
+     */
+    long size() {
+        return size;
+    }
+
+    String toString(Charset charset) {
+        return new String(bytes, 0, length, charset);
+    }
+
+    /**
+     * @return the value, decoded from <code>application/x-www-form-urlencoded</code>.
+     */
+    String urlDecode(Charset charset) {
+        byte[] decoded = new byte[length];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (b == '+') {
+                b = ' ';
+            } else if (b == '%' && i + 2 < length && hex(bytes[i + 1]) >= 0 && hex(bytes[i + 2]) >= 0) {
+                b = (byte) ((hex(bytes[i + 1]) << 4) + hex(bytes[i + 2]));
+                i += 2;
+            }
+            decoded[count++] = b;
+        }
+        return new String(decoded, 0, count, charset);
+    }
+
+    private static int hex(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+
+    void reset() {
+        length = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.body;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parse an <code>application/x-www-form-urlencoded</code> body, byte after byte.
+ *
+ * @author GraviteeSource Team
+ */
+public class FormUrlEncodedParser implements BodyParser {
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private final Map<String, List<String>> fields = new LinkedHashMap<>();
+    private final FieldValue name = new FieldValue();
+    private final FieldValue value = new FieldValue();
+    private boolean inValue;
+    private boolean empty = true;
+    private int count;
+
+    @Override
+    public void write(byte[] chunk, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (count == MAX_FIELDS) {
+                return;
+            }
+            byte b = chunk[i];
+            if (b == '&') {
+                field();
+            } else if (b == '=' && !inValue) {
+                inValue = true;
+                empty = false;
+            } else {
+                (inValue ? value : name).append(b);
+                empty = false;
+            }
+        }
+    }
+
+    @Override
+    public void end() {
+        field();
+    }
+
+    @Override
+    public Map<String, List<String>> getFields() {
+        return fields;
+    }
+
+    @Override
+    public List<Part> getParts() {
+        List<Part> parts = new ArrayList<>();
+        fields.forEach((field, values) -> values.forEach(
+                v -> parts.add(new Part(field, null, null, v.getBytes(CHARSET).length, v))));
+        return Collections.unmodifiableList(parts);
+    }
+
+    private void field() {
+        if (!empty && count < MAX_FIELDS) {
+            count++;
+            fields.computeIfAbsent(name.urlDecode(CHARSET), key -> new ArrayList<>()).add(value.urlDecode(CHARSET));
+        }
+        name.reset();
+        value.reset();
+        inValue = false;
+        empty = true;
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.body;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * A bounded pool of {@link Inflater}s, so inflating a request body does not allocate a new native zlib stream.
+ *
+ * @author GraviteeSource Team
+ */
+final class InflaterPool {
+
+    private static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Inflaters for raw deflate data, as found in gzip members.
+     */
+    static final InflaterPool RAW = new InflaterPool(true);
+
+    /**
+     * Inflaters for zlib wrapped data, as sent with <code>Content-Encoding: deflate</code>.
+     */
+    static final InflaterPool ZLIB = new InflaterPool(false);
+
+    private final boolean nowrap;
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private InflaterPool(boolean nowrap) {
+        this.nowrap = nowrap;
+    }
+
+    Inflater borrow() {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            return new Inflater(nowrap);
+        }
+        size.decrementAndGet();
+        return inflater;
+    }
+
+    void release(Inflater inflater) {
+        inflater.reset();
+        if (size.incrementAndGet() <= MAX_POOLED) {
+            inflaters.offer(inflater);
+        } else {
+            size.decrementAndGet();
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.body;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parse a <code>multipart/form-data</code> body as its chunks arrive.
+ *
+ * Only the bytes which may belong to a boundary split across two chunks are kept between chunks. The content of
+ * file parts is counted and dropped, field values are kept up to {@link #MAX_FIELD_SIZE} bytes. Parts beyond the
+ * first {@link #MAX_FIELDS} are dropped.
+ *
+ * @author GraviteeSource Team
+ */
+public class MultipartParser implements BodyParser {
+
+    private static final int MAX_HEADERS_SIZE = 16 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] HEADERS_END = {'\r', '\n', '\r', '\n'};
+
+    private enum State {
+        PREAMBLE, DELIMITER, HEADERS, CONTENT, EPILOGUE
+    }
+
+    private final byte[] delimiter;
+    private final Map<String, List<String>> fields = new LinkedHashMap<>();
+    private final List<Part> parts = new ArrayList<>();
+
+    private byte[] buffer = new byte[8192];
+    private int start;
+    private int end;
+    private State state = State.PREAMBLE;
+
+    private String partName;
+    private String partFilename;
+    private String partContentType;
+    private long partSize;
+    private final FieldValue partValue = new FieldValue();
+
+    public MultipartParser(String boundary) {
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+
+        // The first delimiter is not preceded by a line break
+        append(CRLF, 0, CRLF.length);
+    }
+
+    @Override
+    public void write(byte[] chunk, int offset, int length) {
+        append(chunk, offset, length);
+        process();
+    }
+
+    @Override
+    public void end() {
+        // A part which is not terminated by a delimiter is incomplete, and dropped
+        state = State.EPILOGUE;
+        start = end = 0;
+    }
+
+    @Override
+    public Map<String, List<String>> getFields() {
+        return fields;
+    }
+
+    @Override
+    public List<Part> getParts() {
+        return Collections.unmodifiableList(parts);
+    }
+
+    private void process() {
+        for (;;) {
+            switch (state) {
+                case PREAMBLE: {
+                    int i = indexOf(delimiter);
+                    if (i < 0) {
+                        discard(available() - delimiter.length + 1);
+                        return;
+                    }
+                    discard(i + delimiter.length);
+                    state = State.DELIMITER;
+                    break;
+                }
+                case DELIMITER: {
+                    if (available() < 2) {
+                        return;
+                    }
+                    if (buffer[start] == '-' && buffer[start + 1] == '-') {
+                        state = State.EPILOGUE;
+                        break;
+                    }
+                    int i = indexOf(CRLF);
+                    if (i < 0) {
+                        if (available() > MAX_HEADERS_SIZE) {
+                            state = State.EPILOGUE;
+                        }
+                        return;
+                    }
+                    discard(i + CRLF.length);
+                    state = State.HEADERS;
+                    break;
+                }
+                case HEADERS: {
+                    if (available() < 2) {
+                        return;
+                    }
+                    if (buffer[start] == '\r' && buffer[start + 1] == '\n') {
+                        startPart("");
+                        discard(CRLF.length);
+                    } else {
+                        int i = indexOf(HEADERS_END);
+                        if (i < 0) {
+                            if (available() > MAX_HEADERS_SIZE) {
+                                state = State.EPILOGUE;
+                            }
+                            return;
+                        }
+                        startPart(new String(buffer, start, i, StandardCharsets.UTF_8));
+                        discard(i + HEADERS_END.length);
+                    }
+                    state = State.CONTENT;
+                    break;
+                }
+                case CONTENT: {
+                    int i = indexOf(delimiter);
+                    if (i < 0) {
+                        int count = available() - delimiter.length + 1;
+                        if (count > 0) {
+                            content(count);
+                            discard(count);
+                        }
+                        return;
+                    }
+                    content(i);
+                    discard(i + delimiter.length);
+                    endPart();
+                    state = State.DELIMITER;
+                    break;
+                }
+                default:
+                    start = end = 0;
+                    return;
+            }
+        }
+    }
+
+    private void startPart(String headers) {
+        partName = null;
+        partFilename = null;
+        partContentType = null;
+        partSize = 0;
+        partValue.reset();
+
+        for (String header : headers.split("\r\n")) {
+            int colon = header.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = header.substring(0, colon).trim();
+            String value = header.substring(colon + 1).trim();
+            if ("Content-Disposition".equalsIgnoreCase(name)) {
+                partName = parameter(value, "name");
+                partFilename = parameter(value, "filename");
+            } else if ("Content-Type".equalsIgnoreCase(name)) {
+                partContentType = value;
+            }
+        }
+    }
+
+    private void content(int count) {
+        partSize += count;
+        if (partFilename == null && parts.size() < MAX_FIELDS) {
+            partValue.append(buffer, start, count);
+        }
+    }
+
+    private void endPart() {
+        if (parts.size() == MAX_FIELDS) {
+            return;
+        }
+        if (partFilename != null) {
+            parts.add(new Part(partName, partFilename, partContentType, partSize, null));
+        } else {
+            String value = partValue.toString(StandardCharsets.UTF_8);
+            parts.add(new Part(partName, null, partContentType, partSize, value));
+            if (partName != null) {
+                fields.computeIfAbsent(partName, key -> new ArrayList<>()).add(value);
+            }
+        }
+    }
+
+    /**
+     * Read a parameter of a header value, such as the <code>boundary</code> of a <code>Content-Type</code>.
+     *
+     * @return the value of the parameter, unquoted, or <code>null</code> if there is no such parameter.
+     */
+    static String parameter(String header, String name) {
+        for (String parameter : header.split(";")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).trim().equalsIgnoreCase(name)) {
+                String value = parameter.substring(equals + 1).trim();
+                if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private int available() {
+        return end - start;
+    }
+
+    private void discard(int count) {
+        if (count > 0) {
+            start += count;
+        }
+    }
+
+    private void append(byte[] chunk, int offset, int length) {
+        if (end + length > buffer.length) {
+            int available = available();
+            if (available + length > buffer.length) {
+                buffer = Arrays.copyOfRange(buffer, start, start + Math.max(buffer.length * 2, available + length));
+            } else {
+                System.arraycopy(buffer, start, buffer, 0, available);
+            }
+            start = 0;
+            end = available;
+        }
+        System.arraycopy(chunk, offset, buffer, end, length);
+        end += length;
+    }
+
+    /**
+     * @return the position of the given bytes, relative to the start of the pending bytes, or -1.
+     */
+    private int indexOf(byte[] target) {
+        int last = end - target.length;
+        outer:
+        for (int i = start; i <= last; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (buffer[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i - start;
+        }
+        return -1;
+    }
+}
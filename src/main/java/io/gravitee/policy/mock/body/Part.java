@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.body;
+
+import java.util.Objects;
+
+/**
+ * A part of a form request body. The content of a file part is not kept, only its size.
+ *
+ * @author GraviteeSource Team
+ */
+public class Part {
+
+    private final String name;
+    private final String filename;
+    private final String contentType;
+    private final long size;
+    private final String value;
+
+    public Part(String name, String filename, String contentType, long size, String value) {
+        this.name = name;
+        this.filename = filename;
+        this.contentType = contentType;
+        this.size = size;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the size of the part content, in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the value of the field, or <code>null</code> for a file.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public boolean isFile() {
+        return filename != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Part part = (Part) o;
+        return size == part.size &&
+                Objects.equals(name, part.name) &&
+                Objects.equals(filename, part.filename) &&
+                Objects.equals(contentType, part.contentType) &&
+                Objects.equals(value, part.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, filename, contentType, size, value);
+    }
+
+    @Override
+    public String toString() {
+        return (value != null) ? value : filename;
+    }
+}
@@ -0,0 +1,322 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.body;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflate a <code>gzip</code> or <code>deflate</code> encoded request body as its chunks arrive.
+ *
+ * The decompression ratio is checked after every chunk, so a small body inflating to a huge one (a decompression
+ * bomb) is rejected before it is expanded in memory. Chunks are inflated into a single reusable buffer, whose content
+ * is handed to a {@link Sink} before being overwritten. A body whose compressed stream is truncated, or whose gzip
+ * trailer does not match the inflated bytes, is rejected once it is completely read.
+ *
+ * @author GraviteeSource Team
+ */
+public class RequestInflater {
+
+    /**
+     * Bodies are allowed to inflate up to this size, whatever their ratio.
+     */
+    private static final long RATIO_FREE_SIZE = 64 * 1024;
+
+    private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+
+    /**
+     * Receive the inflated bytes of a body.
+     */
+    @FunctionalInterface
+    public interface Sink {
+
+        /**
+         * @param bytes a buffer only valid for the duration of the call.
+         */
+        void write(byte[] bytes, int offset, int length);
+    }
+
+    private final boolean gzip;
+    private final int maxRatio;
+    private final byte[] output = new byte[8192];
+
+    private InflaterPool pool;
+    private Inflater inflater;
+    private byte[] header;
+    private int headerLength;
+    private boolean headerRead;
+    private CRC32 crc;
+    private byte[] trailer;
+    private int trailerLength;
+    private long compressed;
+    private long inflated;
+
+    private RequestInflater(boolean gzip, int maxRatio) {
+        this.gzip = gzip;
+        this.maxRatio = maxRatio;
+        this.pool = gzip ? InflaterPool.RAW : InflaterPool.ZLIB;
+        this.inflater = pool.borrow();
+        this.headerRead = !gzip;
+        if (gzip) {
+            this.crc = new CRC32();
+            this.trailer = new byte[TRAILER_SIZE];
+        }
+    }
+
+    /**
+     * Create the inflater of a request body.
+     *
+     * @param contentEncoding the content encoding of the request.
+     * @param maxRatio the maximum ratio between the inflated and the compressed sizes, 0 for no limit.
+     * @return the inflater, or <code>null</code> if the body is not encoded.
+     */
+    public static RequestInflater of(String contentEncoding, int maxRatio) {
+        if (contentEncoding == null) {
+            return null;
+        }
+
+        String encoding = contentEncoding.trim();
+        if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+            return new RequestInflater(true, maxRatio);
+        }
+        if ("deflate".equalsIgnoreCase(encoding)) {
+            return new RequestInflater(false, maxRatio);
+        }
+        return null;
+    }
+
+    /**
+     * Inflate a chunk of the body.
+     *
+     * @param sink receives the inflated bytes, if any.
+     * @throws InflateException if the body is corrupted or inflates beyond the allowed ratio.
+     */
+    public void inflate(byte[] chunk, Sink sink) throws InflateException {
+        if (inflater == null) {
+            return;
+        }
+
+        compressed += chunk.length;
+        int offset = 0;
+        if (!headerRead) {
+            offset = readHeader(chunk);
+            if (offset < 0) {
+                return;
+            }
+        }
+        if (inflater.finished()) {
+            readTrailer(chunk, offset, chunk.length - offset);
+            return;
+        }
+
+        byte[] input = chunk;
+        if (header != null) {
+            // The header was split across chunks, the compressed data starts in the accumulated bytes
+            input = Arrays.copyOfRange(header, offset, headerLength);
+            offset = 0;
+            header = null;
+        }
+
+        inflater.setInput(input, offset, input.length - offset);
+        try {
+            while (!inflater.finished() && !inflater.needsInput()) {
+                if (inflater.needsDictionary()) {
+                    throw new DataFormatException("a preset dictionary is not supported");
+                }
+                int count = inflater.inflate(output);
+                if (count > 0) {
+                    if (crc != null) {
+                        crc.update(output, 0, count);
+                    }
+                    inflated += count;
+                    if (maxRatio > 0 && inflated > RATIO_FREE_SIZE && inflated > compressed * maxRatio) {
+                        end();
+                        throw new InflateException("Request body inflates beyond the allowed ratio of " + maxRatio, true);
+                    }
+                    sink.write(output, 0, count);
+                }
+            }
+        } catch (DataFormatException dfe) {
+            end();
+            throw new InflateException("Corrupted request body: " + dfe.getMessage(), false);
+        }
+
+        if (inflater.finished()) {
+            int remaining = inflater.getRemaining();
+            readTrailer(input, input.length - remaining, remaining);
+        }
+    }
+
+    /**
+     * Check the body is complete, and give the underlying inflater back to the pool. Must be called once the body
+     * is completely read, unless {@link #inflate(byte[], Sink)} failed.
+     *
+     * @throws InflateException if the compressed stream is truncated, or the gzip trailer does not match.
+     */
+    public void finish() throws InflateException {
+        if (inflater == null) {
+            return;
+        }
+
+        try {
+            if (compressed == 0) {
+                // No body at all
+                return;
+            }
+            if (!inflater.finished()) {
+                throw new InflateException("Truncated request body", false);
+            }
+            if (gzip) {
+                if (trailerLength < TRAILER_SIZE) {
+                    throw new InflateException("Truncated request body: incomplete gzip trailer", false);
+                }
+                if (readInt(trailer, 0) != (int) crc.getValue()) {
+                    throw new InflateException("Corrupted request body: CRC32 mismatch", false);
+                }
+                if (readInt(trailer, 4) != (int) inflated) {
+                    throw new InflateException("Corrupted request body: size mismatch", false);
+                }
+            }
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Give the underlying inflater back to the pool, without checking the body.
+     */
+    public void end() {
+        if (inflater != null) {
+            pool.release(inflater);
+            inflater = null;
+            pool = null;
+        }
+    }
+
+    /**
+     * Read the gzip member header, from the given chunk if it holds it entirely, or accumulated from several chunks.
+     *
+     * @return the position of the compressed data, in the chunk or in the accumulated header, or -1 if more bytes
+     * are needed.
+     */
+    private int readHeader(byte[] chunk) throws InflateException {
+        byte[] source = chunk;
+        int length = chunk.length;
+        if (header != null) {
+            if (headerLength + chunk.length > header.length) {
+                header = Arrays.copyOf(header, Math.max(header.length * 2, headerLength + chunk.length));
+            }
+            System.arraycopy(chunk, 0, header, headerLength, chunk.length);
+            headerLength += chunk.length;
+            source = header;
+            length = headerLength;
+        }
+
+        int position;
+        try {
+            position = headerLength(source, length);
+        } catch (InflateException ie) {
+            end();
+            throw ie;
+        }
+        if (position < 0) {
+            if (header == null) {
+                header = Arrays.copyOf(chunk, Math.max(64, chunk.length * 2));
+                headerLength = chunk.length;
+            }
+            return -1;
+        }
+        headerRead = true;
+        return position;
+    }
+
+    private void readTrailer(byte[] source, int offset, int length) {
+        if (trailer == null) {
+            // Data after the end of a deflate stream is ignored
+            return;
+        }
+        int count = Math.min(length, TRAILER_SIZE - trailerLength);
+        if (count > 0) {
+            System.arraycopy(source, offset, trailer, trailerLength, count);
+            trailerLength += count;
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8)
+                | ((bytes[offset + 2] & 0xff) << 16) | ((bytes[offset + 3] & 0xff) << 24);
+    }
+
+    /**
+     * @return the length of the gzip member header, or -1 if more bytes are needed.
+     */
+    private static int headerLength(byte[] header, int length) throws InflateException {
+        if (length < HEADER_SIZE) {
+            return -1;
+        }
+        if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || header[2] != 8) {
+            throw new InflateException("Not in gzip format", false);
+        }
+
+        int flags = header[3] & 0xff;
+        int position = HEADER_SIZE;
+        if ((flags & FEXTRA) != 0) {
+            if (length < position + 2) {
+                return -1;
+            }
+            position += 2 + ((header[position] & 0xff) | ((header[position + 1] & 0xff) << 8));
+        }
+        if ((flags & FNAME) != 0) {
+            position = skipZeroTerminated(header, position, length);
+        }
+        if ((flags & FCOMMENT) != 0 && position >= 0) {
+            position = skipZeroTerminated(header, position, length);
+        }
+        if ((flags & FHCRC) != 0 && position >= 0) {
+            position += 2;
+        }
+        return (position < 0 || position > length) ? -1 : position;
+    }
+
+    private static int skipZeroTerminated(byte[] header, int position, int length) {
+        for (int i = position; i < length; i++) {
+            if (header[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+    public static class InflateException extends Exception {
+
+        private final boolean tooLarge;
+
+        InflateException(String message, boolean tooLarge) {
+            super(message);
+            this.tooLarge = tooLarge;
+        }
+
+        /**
+         * @return <code>true</code> if the body has been rejected because of its decompression ratio.
+         */
+        public boolean isTooLarge() {
+            return tooLarge;
+        }
+    }
+}
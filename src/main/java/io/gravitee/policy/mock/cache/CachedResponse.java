@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.cache;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+
+import java.util.ArrayList;
+
+/**
+ * A rendered mock response, shared by every request having the same {@link CacheKey}.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CachedResponse {
+
+    private final int status;
+    private final HttpHeaders headers;
+    private final Buffer body;
+
+    public CachedResponse(int status, HttpHeaders headers, Buffer body) {
+        this.status = status;
+        this.headers = copy(headers);
+        this.body = body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return a copy of the headers, the caller being free to mutate it.
+     */
+    public HttpHeaders getHeaders() {
+        return copy(headers);
+    }
+
+    public Buffer getBody() {
+        return body;
+    }
+
+    private static HttpHeaders copy(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        headers.forEach((name, values) -> copy.put(name, new ArrayList<>(values)));
+        return copy;
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Share a single render between concurrent requests having the same {@link CacheKey}.
+ *
+ * The first request renders the response on its own thread, the requests arriving while it is in flight
+ * are completed with the same response (and so the same body buffer) once it is done.
+ *
+ * @author GraviteeSource Team
+ */
+public class RenderCoalescer {
+
+    private final ConcurrentHashMap<CacheKey, CompletableFuture<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public CompletableFuture<CachedResponse> render(CacheKey key, Supplier<CachedResponse> renderer) {
+        CompletableFuture<CachedResponse> future = new CompletableFuture<>();
+        CompletableFuture<CachedResponse> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            future.complete(renderer.get());
+        } catch (Throwable throwable) {
+            future.completeExceptionally(throwable);
+        } finally {
+            inFlight.remove(key, future);
+        }
+
+        return future;
+    }
+}
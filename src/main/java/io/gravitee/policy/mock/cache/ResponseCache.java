@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.cache;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded, concurrent cache of rendered mock responses.
+ *
+ * When full, a new entry is only admitted if it has been requested more often than the oldest
+ * entry, which is then evicted (TinyLFU admission). Otherwise the oldest entry is given another
+ * round and the new one is not stored, so a burst of one-off keys cannot flush hot keys.
+ *
+ * A new entry first reserves a slot, so concurrent puts cannot grow the cache beyond its maximum size.
+ *
+ * @author GraviteeSource Team
+ */
+public class ResponseCache {
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<CacheKey, CachedResponse> entries;
+    private final Queue<CacheKey> order = new ConcurrentLinkedQueue<>();
+    private final FrequencySketch sketch;
+
+    /**
+     * The number of entries stored or about to be stored, never above the maximum size.
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    public ResponseCache(int maximumSize) {
+        this.maximumSize = Math.max(1, maximumSize);
+        this.entries = new ConcurrentHashMap<>(Math.min(this.maximumSize, 1024));
+        this.sketch = new FrequencySketch(this.maximumSize);
+    }
+
+    public CachedResponse get(CacheKey key) {
+        sketch.increment(key.hashCode());
+        return entries.get(key);
+    }
+
+    public void put(CacheKey key, CachedResponse response) {
+        if (entries.replace(key, response) != null || !reserve(key)) {
+            return;
+        }
+
+        if (entries.putIfAbsent(key, response) == null) {
+            order.offer(key);
+        } else {
+            reserved.decrementAndGet();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean reserve(CacheKey candidate) {
+        for (;;) {
+            int count = reserved.get();
+            if (count < maximumSize) {
+                if (reserved.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            } else if (!evictFor(candidate)) {
+                return false;
+            }
+        }
+    }
+
+    private boolean evictFor(CacheKey candidate) {
+        CacheKey victim = order.poll();
+        if (victim == null) {
+            // The cache is filled by puts still in flight
+            return false;
+        }
+
+        if (sketch.frequency(candidate.hashCode()) > sketch.frequency(victim.hashCode())) {
+            if (entries.remove(victim) != null) {
+                reserved.decrementAndGet();
+            }
+            return true;
+        }
+
+        order.offer(victim);
+        return false;
+    }
+}
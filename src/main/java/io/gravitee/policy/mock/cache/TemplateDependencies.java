@@ -0,0 +1,350 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.cache;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.util.MultiValueMap;
+import io.gravitee.policy.mock.el.EvaluableRequest;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@link EvaluableRequest} attributes read by a set of mock templates.
+ *
+ * Templates are scanned for <code>#request</code> accesses such as <code>#request.paths[3]</code> or
+ * <code>#request.headers['X-Id']</code>. Two requests with the same values for those attributes render
+ * the same response, as long as the templates do not read anything else: a template using another
+ * variable than <code>#request</code> and <code>#properties</code>, a type reference (<code>T(...)</code>),
+ * a constructor, or the request in a way which can not be resolved statically is considered as not
+ * cacheable.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TemplateDependencies {
+
+    private static final Pattern VARIABLE = Pattern.compile("#([A-Za-z_][A-Za-z0-9_]*)");
+    private static final Pattern NON_DETERMINISTIC = Pattern.compile("T\\s*\\(|\\bnew\\s+[A-Za-z_]");
+
+    private static final String REQUEST_VARIABLE = "request";
+    private static final String PROPERTIES_VARIABLE = "properties";
+
+    private final boolean cacheable;
+    private final boolean readsContent;
+    private final boolean readsForm;
+    private final String[] attributes;
+    private final String[] headers;
+    private final String[] params;
+    private final boolean allParams;
+
+    private TemplateDependencies(boolean cacheable, boolean readsContent, boolean readsForm, Set<String> attributes,
+                                 Set<String> headers, Set<String> params, boolean allParams) {
+        this.cacheable = cacheable;
+        this.readsContent = readsContent;
+        this.readsForm = readsForm;
+        this.attributes = attributes.toArray(new String[0]);
+        this.headers = headers.toArray(new String[0]);
+        this.params = params.toArray(new String[0]);
+        this.allParams = allParams;
+    }
+
+    /**
+     * Analyse the given templates.
+     *
+     * @param templates the templates, <code>null</code> values being ignored.
+     * @param varyHeaders the request headers listed by a static <code>Vary</code> response header.
+     * @return the dependencies of the templates.
+     */
+    public static TemplateDependencies of(Collection<String> templates, Collection<String> varyHeaders) {
+        Set<String> attributes = new TreeSet<>();
+        Set<String> headers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        Set<String> params = new TreeSet<>();
+        boolean allParams = false;
+        boolean cacheable = true;
+        boolean readsContent = false;
+        boolean readsForm = false;
+
+        for (String varyHeader : varyHeaders) {
+            if ("*".equals(varyHeader)) {
+                cacheable = false;
+            }
+            headers.add(varyHeader);
+        }
+
+        for (String template : templates) {
+            if (template == null) {
+                continue;
+            }
+
+            if (NON_DETERMINISTIC.matcher(template).find()) {
+                cacheable = false;
+            }
+
+            Matcher matcher = VARIABLE.matcher(template);
+            while (matcher.find()) {
+                String variable = matcher.group(1);
+                int[] position = {matcher.end()};
+
+                if (PROPERTIES_VARIABLE.equals(variable)) {
+                    continue;
+                }
+
+                if (!REQUEST_VARIABLE.equals(variable)) {
+                    // Something like a color code in a literal text, not a variable
+                    if (isAccessor(template, matcher.end())) {
+                        cacheable = false;
+                    }
+                    continue;
+                }
+
+                String attribute = member(template, position);
+                if (attribute == null) {
+                    // The whole request is used, its body included
+                    cacheable = false;
+                    readsContent = true;
+                    continue;
+                }
+
+                switch (attribute) {
+                    case "headers":
+                        String header = member(template, position);
+                        if (header == null) {
+                            cacheable = false;
+                        } else {
+                            headers.add(header);
+                        }
+                        break;
+                    case "params":
+                    case "parameters":
+                        String param = member(template, position);
+                        if (param == null) {
+                            allParams = true;
+                        } else {
+                            params.add(param);
+                        }
+                        break;
+                    case "path":
+                    case "paths":
+                        attributes.add("path");
+                        break;
+                    case "pathInfo":
+                    case "pathInfos":
+                        attributes.add("pathInfo");
+                        break;
+                    case "contextPath":
+                    case "method":
+                    case "scheme":
+                    case "localAddress":
+                        attributes.add(attribute);
+                        break;
+                    case "content":
+                    case "json":
+                    case "xml":
+                        attributes.add("content");
+                        readsContent = true;
+                        break;
+                    case "cookies":
+                        headers.add(HttpHeaders.COOKIE);
+                        break;
+                    case "form":
+                    case "parts":
+                        attributes.add(attribute);
+                        readsForm = true;
+                        break;
+                    case "id":
+                        cacheable = false;
+                        break;
+                    default:
+                        // Anything we are not able to resolve
+                        cacheable = false;
+                        readsContent = true;
+                }
+            }
+        }
+
+        return new TemplateDependencies(cacheable, readsContent, readsForm, attributes, headers, params, allParams);
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * @return <code>true</code> if the templates may read the raw request body, through <code>content</code>,
+     * <code>json</code>, <code>xml</code> or in a way which can not be resolved statically.
+     */
+    public boolean readsContent() {
+        return readsContent;
+    }
+
+    /**
+     * @return <code>true</code> if the templates read the fields of a form request body.
+     */
+    public boolean readsForm() {
+        return readsForm;
+    }
+
+    /**
+     * Build the cache key of the given request, made of the values of the attributes the templates depend on.
+     * The request body, form fields and parts are represented by their SHA-256 digest.
+     */
+    public CacheKey key(EvaluableRequest request) {
+        Object[] values = new Object[attributes.length + headers.length + params.length + (allParams ? 1 : 0)];
+        int i = 0;
+
+        for (String attribute : attributes) {
+            values[i++] = attribute(request, attribute);
+        }
+
+        for (String header : headers) {
+            values[i++] = request.getHeaders().get(header);
+        }
+
+        MultiValueMap<String, String> parameters = request.getParams();
+        for (String param : params) {
+            values[i++] = (parameters != null) ? parameters.get(param) : null;
+        }
+
+        if (allParams) {
+            values[i] = (parameters != null) ? new TreeMap<>(parameters) : null;
+        }
+
+        return new CacheKey(values);
+    }
+
+    private static Object attribute(EvaluableRequest request, String attribute) {
+        switch (attribute) {
+            case "path":
+                return request.getPath();
+            case "pathInfo":
+                return request.getPathInfo();
+            case "contextPath":
+                return request.getContextPath();
+            case "method":
+                return request.getMethod();
+            case "scheme":
+                return request.getScheme();
+            case "localAddress":
+                return request.getLocalAddress();
+            // Digests, so that cached keys do not retain whole request bodies
+            case "content":
+                return request.contentDigest();
+            case "form":
+                return request.formDigest();
+            case "parts":
+                return request.partsDigest();
+            default:
+                throw new IllegalArgumentException("Unknown request attribute: " + attribute);
+        }
+    }
+
+    private static boolean isAccessor(String template, int position) {
+        int i = skipWhitespaces(template, position);
+        return i < template.length() && (template.charAt(i) == '.' || template.charAt(i) == '[');
+    }
+
+    /**
+     * Read a member access: <code>.name</code>, <code>.getName()</code>, <code>['name']</code>,
+     * <code>.get('name')</code> or <code>.getFirst('name')</code>.
+     *
+     * @param template the template.
+     * @param position the position to read from, updated to the end of the access.
+     * @return the name of the accessed member, or <code>null</code> if there is no member access at this position.
+     */
+    private static String member(String template, int[] position) {
+        int length = template.length();
+        int i = skipWhitespaces(template, position[0]);
+        if (i >= length) {
+            return null;
+        }
+
+        String name;
+        if (template.charAt(i) == '[') {
+            int[] end = {i + 1};
+            name = quoted(template, end);
+            i = skipWhitespaces(template, end[0]);
+            if (name == null || i >= length || template.charAt(i) != ']') {
+                return null;
+            }
+            i++;
+        } else if (template.charAt(i) == '.') {
+            int start = i = skipWhitespaces(template, i + 1);
+            while (i < length && Character.isJavaIdentifierPart(template.charAt(i))) {
+                i++;
+            }
+            if (start == i) {
+                return null;
+            }
+            name = template.substring(start, i);
+
+            int j = skipWhitespaces(template, i);
+            if (j < length && template.charAt(j) == '(') {
+                j = skipWhitespaces(template, j + 1);
+                if (j < length && template.charAt(j) == ')') {
+                    name = property(name);
+                } else if ("get".equals(name) || "getFirst".equals(name)) {
+                    int[] end = {j};
+                    name = quoted(template, end);
+                    j = skipWhitespaces(template, end[0]);
+                    if (name == null || j >= length || template.charAt(j) != ')') {
+                        return null;
+                    }
+                } else {
+                    return null;
+                }
+                i = j + 1;
+            }
+        } else {
+            return null;
+        }
+
+        position[0] = i;
+        return name;
+    }
+
+    private static String quoted(String template, int[] position) {
+        int i = skipWhitespaces(template, position[0]);
+        if (i >= template.length() || (template.charAt(i) != '\'' && template.charAt(i) != '"')) {
+            return null;
+        }
+
+        int end = template.indexOf(template.charAt(i), i + 1);
+        if (end < 0) {
+            return null;
+        }
+
+        position[0] = end + 1;
+        return template.substring(i + 1, end);
+    }
+
+    private static String property(String getter) {
+        if (getter.length() > 3 && getter.startsWith("get")) {
+            return Character.toLowerCase(getter.charAt(3)) + getter.substring(4);
+        }
+        return getter;
+    }
+
+    private static int skipWhitespaces(String template, int position) {
+        while (position < template.length() && Character.isWhitespace(template.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
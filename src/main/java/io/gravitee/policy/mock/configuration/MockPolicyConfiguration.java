@@ -16,6 +16,7 @@
 package io.gravitee.policy.mock.configuration;
 
 import io.gravitee.policy.api.PolicyConfiguration;
+import io.gravitee.policy.mock.el.EvaluableRequest;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -30,8 +31,38 @@ public class MockPolicyConfiguration implements PolicyConfiguration {
 
     private List<HttpHeader> headers = new ArrayList<>();
 
+    private List<ResponseCookie> cookies = new ArrayList<>();
+
     private String content;
 
+    private int maxXmlSize = EvaluableRequest.DEFAULT_MAX_XML_SIZE;
+
+    private int maxInflateRatio = 100;
+
+    private CacheConfiguration cache = new CacheConfiguration();
+
+    private boolean coalesce;
+
+    private OffloadConfiguration offload = new OffloadConfiguration();
+
+    private BudgetConfiguration budget = new BudgetConfiguration();
+
+    private TimingConfiguration timing = new TimingConfiguration();
+
+    /**
+     * What the policy computes once from this configuration, released with it when the API is undeployed.
+     * Not a bean property, so it is neither bound nor part of the schema.
+     */
+    private transient volatile Object definition;
+
+    public Object definition() {
+        return definition;
+    }
+
+    public void definition(Object definition) {
+        this.definition = definition;
+    }
+
     public String getContent() {
         return content;
     }
@@ -48,6 +79,70 @@ public class MockPolicyConfiguration implements PolicyConfiguration {
         this.headers = headers;
     }
 
+    public List<ResponseCookie> getCookies() {
+        return cookies;
+    }
+
+    public void setCookies(List<ResponseCookie> cookies) {
+        this.cookies = cookies;
+    }
+
+    public int getMaxXmlSize() {
+        return maxXmlSize;
+    }
+
+    public void setMaxXmlSize(int maxXmlSize) {
+        this.maxXmlSize = maxXmlSize;
+    }
+
+    public int getMaxInflateRatio() {
+        return maxInflateRatio;
+    }
+
+    public void setMaxInflateRatio(int maxInflateRatio) {
+        this.maxInflateRatio = maxInflateRatio;
+    }
+
+    public CacheConfiguration getCache() {
+        return cache;
+    }
+
+    public void setCache(CacheConfiguration cache) {
+        this.cache = cache;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    public OffloadConfiguration getOffload() {
+        return offload;
+    }
+
+    public void setOffload(OffloadConfiguration offload) {
+        this.offload = offload;
+    }
+
+    public BudgetConfiguration getBudget() {
+        return budget;
+    }
+
+    public void setBudget(BudgetConfiguration budget) {
+        this.budget = budget;
+    }
+
+    public TimingConfiguration getTiming() {
+        return timing;
+    }
+
+    public void setTiming(TimingConfiguration timing) {
+        this.timing = timing;
+    }
+
     public int getStatus() {
         return status;
     }
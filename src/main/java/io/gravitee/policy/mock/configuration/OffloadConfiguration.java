@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.configuration;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class OffloadConfiguration {
+
+    private boolean enabled;
+
+    private int templateSizeThreshold = 65536;
+
+    private int renderTimeThreshold = 5;
+
+    private int poolSize;
+
+    private int queueSize = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getTemplateSizeThreshold() {
+        return templateSizeThreshold;
+    }
+
+    public void setTemplateSizeThreshold(int templateSizeThreshold) {
+        this.templateSizeThreshold = templateSizeThreshold;
+    }
+
+    public int getRenderTimeThreshold() {
+        return renderTimeThreshold;
+    }
+
+    public void setRenderTimeThreshold(int renderTimeThreshold) {
+        this.renderTimeThreshold = renderTimeThreshold;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.el;
+
+import io.gravitee.policy.mock.json.JSONObject;
+import io.gravitee.policy.mock.json.JSONPath;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A request body converted to a JSON document on first access, as seen by mock templates.
+ *
+ * Values are looked up by JSON pointer (<code>['/user/id']</code>), by JSONPath (<code>['$.items[*].id']</code>) or by
+ * top-level member name (<code>['id']</code>). Expressions are compiled once for all the requests, see
+ * {@link JSONPath#compile(String)}, and lookups and the converted document are kept for the rest of the request.
+ *
+ * @author GraviteeSource Team
+ */
+abstract class EvaluableDocument extends AbstractMap<String, Object> {
+
+    private static final Object MISSING = new Object();
+
+    private final Supplier<String> content;
+    private final Map<String, Object> lookups = new HashMap<>();
+    private Object root = MISSING;
+
+    /**
+     * @param content the body, decoded on first use only.
+     */
+    EvaluableDocument(final Supplier<String> content) {
+        this.content = content;
+    }
+
+    protected String content() {
+        return content.get();
+    }
+
+    /**
+     * Convert the whole body.
+     *
+     * @return the document, or <code>null</code> if the body can not be converted.
+     */
+    protected abstract Object convert();
+
+    /**
+     * Look up a value, converting the whole body if needed. Implementations may avoid the conversion.
+     */
+    protected Object lookup(JSONPath path) {
+        return path.query(getRoot());
+    }
+
+    protected boolean isConverted() {
+        return root != MISSING;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (key == null) {
+            return null;
+        }
+
+        final String name = key.toString();
+        final String expression = (name.isEmpty() || name.charAt(0) == '/' || name.charAt(0) == '$')
+                ? name : '/' + name.replace("~", "~0").replace("/", "~1");
+
+        Object value = lookups.get(expression);
+        if (value == null && !lookups.containsKey(expression)) {
+            try {
+                value = lookup(JSONPath.compile(expression));
+            } catch (IllegalArgumentException iae) {
+                value = null;
+            }
+            lookups.put(expression, value);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the whole converted body, or <code>null</code> if the body can not be converted.
+     */
+    public Object getRoot() {
+        if (root == MISSING) {
+            root = convert();
+        }
+        return root;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Object document = getRoot();
+        if (!(document instanceof JSONObject)) {
+            return Collections.emptySet();
+        }
+
+        JSONObject object = (JSONObject) document;
+        Map<String, Object> entries = new LinkedHashMap<>();
+        for (String name : object.keySet()) {
+            entries.put(name, object.opt(name));
+        }
+        return entries.entrySet();
+    }
+
+    @Override
+    public String toString() {
+        return content();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.el;
+
+import io.gravitee.policy.mock.json.JSONByteParser;
+import io.gravitee.policy.mock.json.JSONException;
+import io.gravitee.policy.mock.json.JSONPath;
+import io.gravitee.policy.mock.json.JSONTokener;
+
+import java.util.function.Supplier;
+
+/**
+ * A JSON request body, as seen by mock templates through <code>#request.json</code>.
+ *
+ * Until the whole body is needed, a lookup by JSON pointer, by member name or by a JSONPath made of member names only
+ * parses the looked up value, the body being scanned up to it and no further. Both lookups and the whole body parsing
+ * work on the UTF-8 bytes of the body when they are available, without decoding it first.
+ *
+ * @author GraviteeSource Team
+ */
+public class EvaluableJson extends EvaluableDocument {
+
+    private final byte[] bytes;
+
+    /**
+     * @param bytes the UTF-8 encoded body, if available.
+     */
+    EvaluableJson(final Supplier<String> content, final byte[] bytes) {
+        super(content);
+        this.bytes = bytes;
+    }
+
+    @Override
+    protected Object convert() {
+        try {
+            return (bytes != null) ? new JSONByteParser(bytes).nextValue() : new JSONTokener(content()).nextValue();
+        } catch (JSONException jsonEx) {
+            return null;
+        }
+    }
+
+    @Override
+    protected Object lookup(JSONPath path) {
+        if (!isConverted() && path.isTextQuery()) {
+            try {
+                return (bytes != null) ? path.queryFrom(bytes) : path.queryFrom(content());
+            } catch (JSONException jsonEx) {
+                // Not strict JSON along the path, fallback to a complete parsing
+            }
+        }
+
+        return super.lookup(path);
+    }
+}
@@ -18,6 +18,19 @@ package io.gravitee.policy.mock.el;
 import io.gravitee.common.http.HttpHeaders;
 import io.gravitee.common.util.MultiValueMap;
 import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.mock.body.BodyParser;
+import io.gravitee.policy.mock.body.Part;
+import io.gravitee.policy.mock.utils.CookieUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -25,12 +38,64 @@ import io.gravitee.gateway.api.Request;
  */
 public class EvaluableRequest {
 
+    /**
+     * Default maximum size, in bytes, of a body converted from XML.
+     */
+    public static final int DEFAULT_MAX_XML_SIZE = 1024 * 1024;
+
     private final Request request;
-    private final String content;
+    private final Buffer body;
+    private byte[] bytes;
+    private String content;
+    private final int maxXmlSize;
+    private final BodyParser formParser;
+    private EvaluableJson json;
+    private EvaluableXml xml;
+    private Map<String, String> cookies;
 
     public EvaluableRequest(final Request request, final String content) {
+        this(request, content, DEFAULT_MAX_XML_SIZE);
+    }
+
+    public EvaluableRequest(final Request request, final String content, final int maxXmlSize) {
+        this(request, content, maxXmlSize, null);
+    }
+
+    /**
+     * @param formParser the parser the form request body went through, if any.
+     */
+    public EvaluableRequest(final Request request, final String content, final int maxXmlSize,
+                            final BodyParser formParser) {
         this.request = request;
+        this.body = null;
         this.content = content;
+        this.maxXmlSize = maxXmlSize;
+        this.formParser = formParser;
+    }
+
+    /**
+     * @param body the raw request body, decoded on first access only.
+     * @param formParser the parser the form request body went through, if any.
+     */
+    public EvaluableRequest(final Request request, final Buffer body, final int maxXmlSize,
+                            final BodyParser formParser) {
+        this.request = request;
+        this.body = body;
+        this.maxXmlSize = maxXmlSize;
+        this.formParser = formParser;
+    }
+
+    /**
+     * @param bytes the raw request body, as inflated, decoded on first access only.
+     * @param formParser the parser the form request body went through, if any.
+     */
+    public EvaluableRequest(final Request request, final byte[] bytes, final int maxXmlSize,
+                            final BodyParser formParser) {
+        this.request = request;
+        this.body = null;
+        this.bytes = bytes;
+        this.maxXmlSize = maxXmlSize;
+        this.formParser = formParser;
     }
 
     public String getId() {
@@ -77,7 +142,156 @@ public class EvaluableRequest {
         return request.pathInfo();
     }
 
+    /**
+     * @return the cookies sent with the request, parsed from the <code>Cookie</code> header on first access. Values
+     * are returned as sent, without any unescaping.
+     */
+    public Map<String, String> getCookies() {
+        if (cookies == null) {
+            cookies = new LinkedHashMap<>();
+            List<String> values = request.headers().get(HttpHeaders.COOKIE);
+            if (values != null) {
+                for (String value : values) {
+                    CookieUtils.parseCookies(value, cookies);
+                }
+            }
+        }
+        return cookies;
+    }
+
     public String getContent() {
+        if (content == null && hasBytes()) {
+            content = new String(bytes(), StandardCharsets.UTF_8);
+        }
         return content;
     }
+
+    /**
+     * @return the SHA-256 digest of the request body, computed from its raw bytes when available, or
+     * <code>null</code> if there is no body.
+     */
+    public String contentDigest() {
+        if (!hasBytes() && content == null) {
+            return null;
+        }
+
+        MessageDigest digest = sha256();
+        return encode(digest.digest(hasBytes() ? bytes() : content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return the SHA-256 digest of the names and values of the form fields.
+     */
+    public String formDigest() {
+        MessageDigest digest = sha256();
+        for (Map.Entry<String, List<String>> field : getForm().entrySet()) {
+            update(digest, field.getKey());
+            update(digest, Integer.toString(field.getValue().size()));
+            for (String value : field.getValue()) {
+                update(digest, value);
+            }
+        }
+        return encode(digest.digest());
+    }
+
+    /**
+     * @return the SHA-256 digest of the name, filename, content type, size and value of the form parts.
+     */
+    public String partsDigest() {
+        MessageDigest digest = sha256();
+        for (Part part : getParts()) {
+            update(digest, part.getName());
+            update(digest, part.getFilename());
+            update(digest, part.getContentType());
+            update(digest, Long.toString(part.getSize()));
+            update(digest, part.getValue());
+        }
+        return encode(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    /**
+     * Add a string to the digest, prefixed by its length so that consecutive strings can not be confused.
+     */
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static String encode(byte[] digest) {
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    /**
+     * @return the size of the raw body in bytes, without copying it, or -1 if the body is only available decoded.
+     */
+    private long size() {
+        if (bytes != null) {
+            return bytes.length;
+        }
+        return (body != null) ? body.length() : -1;
+    }
+
+    private boolean hasBytes() {
+        return body != null || bytes != null;
+    }
+
+    private byte[] bytes() {
+        if (bytes == null) {
+            bytes = body.getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the request body as JSON, parsed on first access, or <code>null</code> if there is no body.
+     */
+    public EvaluableJson getJson() {
+        if (json == null && (hasBytes() || content != null)) {
+            json = new EvaluableJson(this::getContent, hasBytes() ? bytes() : null);
+        }
+        return json;
+    }
+
+    /**
+     * @return the fields of a form request body (<code>application/x-www-form-urlencoded</code> or
+     * <code>multipart/form-data</code>), files excluded.
+     */
+    public Map<String, List<String>> getForm() {
+        return (formParser != null) ? formParser.getFields() : Collections.emptyMap();
+    }
+
+    /**
+     * @return the parts of a form request body, files included but without their content.
+     */
+    public List<Part> getParts() {
+        return (formParser != null) ? formParser.getParts() : Collections.emptyList();
+    }
+
+    /**
+     * @return the request body converted from XML on first access, or <code>null</code> if there is no body.
+     */
+    public EvaluableXml getXml() {
+        if (xml == null && (hasBytes() || content != null)) {
+            xml = new EvaluableXml(this::getContent, size(), maxXmlSize);
+        }
+        return xml;
+    }
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.el;
+
+import io.gravitee.policy.mock.json.JSONException;
+import io.gravitee.policy.mock.json.XML;
+
+import java.util.function.Supplier;
+
+/**
+ * An XML request body, as seen by mock templates through <code>#request.xml</code>.
+ *
+ * The body is converted with {@link XML#toJSONObject(String)}, so elements are looked up by tag name, prefix
+ * included: <code>#request.xml['/soap:Envelope/soap:Body/GetUser/id']</code>. Bodies larger than the given size
+ * are not converted, to bound the memory used by large uploads: the size of the raw body is checked before it is
+ * decoded.
+ *
+ * @author GraviteeSource Team
+ */
+public class EvaluableXml extends EvaluableDocument {
+
+    private final long size;
+    private final int maxSize;
+
+    /**
+     * @param size the size of the raw body in bytes, or -1 if the body is only available decoded.
+     * @param maxSize the maximum size of a converted body in bytes, 0 for no limit.
+     */
+    EvaluableXml(final Supplier<String> content, final long size, final int maxSize) {
+        super(content);
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    protected Object convert() {
+        if (maxSize > 0 && size > maxSize) {
+            return null;
+        }
+
+        final String content = content();
+        if (maxSize > 0 && size < 0 && content.length() > maxSize) {
+            return null;
+        }
+
+        try {
+            return XML.toJSONObject(content);
+        } catch (JSONException jsonEx) {
+            return null;
+        }
+    }
+}
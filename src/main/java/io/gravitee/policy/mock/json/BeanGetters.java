@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bean getters of a class, as read by {@link JSONObject#JSONObject(Object)}.
+ * <p>
+ * Getters are looked up once per class, and kept as method handles: converting
+ * another bean of the same class does not involve reflection.
+ *
+ * @author GraviteeSource Team
+ */
+final class BeanGetters {
+
+    private static final ClassValue<BeanGetters> GETTERS = new ClassValue<BeanGetters>() {
+        @Override
+        protected BeanGetters computeValue(Class<?> type) {
+            return new BeanGetters(type);
+        }
+    };
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final String[] keys;
+    private final MethodHandle[] getters;
+
+    private BeanGetters(Class<?> klass) {
+        // If klass is a System class then set includeSuperClass to false.
+        boolean includeSuperClass = klass.getClassLoader() != null;
+
+        Method[] methods = includeSuperClass ? klass.getMethods() : klass.getDeclaredMethods();
+        List<String> keys = new ArrayList<String>();
+        List<MethodHandle> getters = new ArrayList<MethodHandle>();
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (Method method : methods) {
+            String key = key(method);
+            if (key == null) {
+                continue;
+            }
+            try {
+                MethodHandle getter = lookup.unreflect(method);
+                if (Modifier.isStatic(method.getModifiers())) {
+                    // Invoked as well, the bean being ignored
+                    getter = MethodHandles.dropArguments(getter, 0, Object.class);
+                }
+                getters.add(getter.asType(GETTER_TYPE));
+                keys.add(key);
+            } catch (IllegalAccessException ignore) {
+                // A public method of a class which is not, it can not be invoked
+            }
+        }
+        this.keys = keys.toArray(new String[0]);
+        this.getters = getters.toArray(new MethodHandle[0]);
+    }
+
+    static BeanGetters of(Class<?> klass) {
+        return GETTERS.get(klass);
+    }
+
+    /**
+     * Put the wrapped values of the non null properties of the bean into the
+     * map. A getter throwing an exception is ignored.
+     */
+    void populate(Object bean, Map<String, Object> map) {
+        for (int i = 0; i < this.getters.length; i++) {
+            try {
+                Object result = this.getters[i].invokeExact(bean);
+                if (result != null) {
+                    map.put(this.keys[i], JSONObject.wrap(result));
+                }
+            } catch (VirtualMachineError vme) {
+                throw vme;
+            } catch (Throwable ignore) {
+            }
+        }
+    }
+
+    /**
+     * @return The key of a getter, or null if the method is not a getter.
+     */
+    private static String key(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) || method.getParameterTypes().length != 0) {
+            return null;
+        }
+
+        String name = method.getName();
+        String key;
+        if (name.startsWith("get")) {
+            if ("getClass".equals(name) || "getDeclaringClass".equals(name)) {
+                return null;
+            }
+            key = name.substring(3);
+        } else if (name.startsWith("is")) {
+            key = name.substring(2);
+        } else {
+            return null;
+        }
+
+        if (key.length() == 0 || !Character.isUpperCase(key.charAt(0))) {
+            return null;
+        }
+        if (key.length() == 1) {
+            return key.toLowerCase();
+        }
+        if (!Character.isUpperCase(key.charAt(1))) {
+            return key.substring(0, 1).toLowerCase() + key.substring(1);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The map of a JSONObject.
+ * <p>
+ * Most JSON objects only have a few members: up to {@link #THRESHOLD} members
+ * are kept in two parallel arrays, in insertion order, and looked up by a
+ * linear scan. Beyond that, they are moved to a LinkedHashMap, so members are
+ * iterated in insertion order whatever the size of the object.
+ *
+ * @author GraviteeSource Team
+ */
+final class CompactMap extends AbstractMap<String, Object> {
+
+    static final int THRESHOLD = 8;
+
+    private static final String[] NO_KEYS = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private String[] keys = NO_KEYS;
+    private Object[] values = NO_VALUES;
+    private int size;
+    private int modifications;
+    private LinkedHashMap<String, Object> hashed;
+
+    CompactMap() {
+    }
+
+    CompactMap(int expectedSize) {
+        if (expectedSize > THRESHOLD) {
+            this.hashed = new LinkedHashMap<String, Object>(expectedSize * 4 / 3 + 1);
+        } else if (expectedSize > 0) {
+            this.keys = new String[expectedSize];
+            this.values = new Object[expectedSize];
+        }
+    }
+
+    @Override
+    public int size() {
+        return (this.hashed != null) ? this.hashed.size() : this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (this.hashed != null) ? this.hashed.containsKey(key) : this.indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (this.hashed != null) {
+            return this.hashed.get(key);
+        }
+        int i = this.indexOf(key);
+        return (i < 0) ? null : this.values[i];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (this.hashed != null) {
+            return this.hashed.put(key, value);
+        }
+        int i = this.indexOf(key);
+        if (i >= 0) {
+            Object previous = this.values[i];
+            this.values[i] = value;
+            return previous;
+        }
+
+        if (this.size == THRESHOLD) {
+            LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>(THRESHOLD * 4);
+            for (int j = 0; j < this.size; j++) {
+                map.put(this.keys[j], this.values[j]);
+            }
+            map.put(key, value);
+            this.hashed = map;
+            this.keys = NO_KEYS;
+            this.values = NO_VALUES;
+            this.size = 0;
+            this.modifications++;
+            return null;
+        }
+
+        if (this.size == this.keys.length) {
+            int capacity = (this.size == 0) ? 4 : THRESHOLD;
+            String[] newKeys = new String[capacity];
+            Object[] newValues = new Object[capacity];
+            System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+            System.arraycopy(this.values, 0, newValues, 0, this.size);
+            this.keys = newKeys;
+            this.values = newValues;
+        }
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.size++;
+        this.modifications++;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (this.hashed != null) {
+            return this.hashed.remove(key);
+        }
+        int i = this.indexOf(key);
+        return (i < 0) ? null : this.removeAt(i);
+    }
+
+    @Override
+    public void clear() {
+        this.hashed = null;
+        this.keys = NO_KEYS;
+        this.values = NO_VALUES;
+        this.size = 0;
+        this.modifications++;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (this.hashed != null) {
+            return this.hashed.entrySet();
+        }
+        return new EntrySet();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        if (this.hashed != null) {
+            return this.hashed.keySet();
+        }
+        return super.keySet();
+    }
+
+    private int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        for (int i = 0; i < this.size; i++) {
+            if (key.equals(this.keys[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object removeAt(int i) {
+        Object previous = this.values[i];
+        int moved = this.size - i - 1;
+        System.arraycopy(this.keys, i + 1, this.keys, i, moved);
+        System.arraycopy(this.values, i + 1, this.values, i, moved);
+        this.size--;
+        this.keys[this.size] = null;
+        this.values[this.size] = null;
+        this.modifications++;
+        return previous;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return CompactMap.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new Iterator<Entry<String, Object>>() {
+
+                private int next;
+                private int last = -1;
+                private int expectedModifications = CompactMap.this.modifications;
+
+                @Override
+                public boolean hasNext() {
+                    // A promotion to a LinkedHashMap or a clear() empties the arrays: fail rather than stop
+                    if (this.expectedModifications != CompactMap.this.modifications) {
+                        throw new ConcurrentModificationException();
+                    }
+                    return this.next < CompactMap.this.size;
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    if (this.expectedModifications != CompactMap.this.modifications) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (this.next >= CompactMap.this.size) {
+                        throw new NoSuchElementException();
+                    }
+                    this.last = this.next++;
+                    return new ArrayEntry(this.last, this.expectedModifications);
+                }
+
+                @Override
+                public void remove() {
+                    if (this.last < 0) {
+                        throw new IllegalStateException();
+                    }
+                    if (this.expectedModifications != CompactMap.this.modifications) {
+                        throw new ConcurrentModificationException();
+                    }
+                    CompactMap.this.removeAt(this.last);
+                    this.next = this.last;
+                    this.last = -1;
+                    this.expectedModifications = CompactMap.this.modifications;
+                }
+            };
+        }
+    }
+
+    /**
+     * An entry of the arrays, only valid as long as the map is not structurally
+     * modified: the entry may otherwise have moved or been removed.
+     */
+    private final class ArrayEntry implements Entry<String, Object> {
+
+        private final int index;
+        private final int expectedModifications;
+
+        ArrayEntry(int index, int expectedModifications) {
+            this.index = index;
+            this.expectedModifications = expectedModifications;
+        }
+
+        @Override
+        public String getKey() {
+            this.checkForModification();
+            return CompactMap.this.keys[this.index];
+        }
+
+        @Override
+        public Object getValue() {
+            this.checkForModification();
+            return CompactMap.this.values[this.index];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            this.checkForModification();
+            Object previous = CompactMap.this.values[this.index];
+            CompactMap.this.values[this.index] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            Object value = this.getValue();
+            return this.getKey().equals(e.getKey())
+                    && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = this.getValue();
+            return this.getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return this.getKey() + "=" + this.getValue();
+        }
+
+        private void checkForModification() {
+            if (this.expectedModifications != CompactMap.this.modifications) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The list of a JSONArray.
+ * <p>
+ * Arrays of numbers are kept in primitive arrays rather than as boxed
+ * numbers: an array of Integers in an <code>int[]</code>, of Integers and
+ * Longs in a <code>long[]</code>, of Doubles in a <code>double[]</code>. The
+ * elements are boxed again when they are read, to the same type: a Long is
+ * only kept in a <code>long[]</code> if it does not fit in an int, as when
+ * it is parsed, so that it is not mistaken for an Integer. As soon as an
+ * element of another type is added, the list falls back to an
+ * <code>Object[]</code>.
+ *
+ * @author GraviteeSource Team
+ */
+final class ElementList extends AbstractList<Object> implements RandomAccess {
+
+    enum Kind {
+        INT,
+        LONG,
+        DOUBLE,
+        OBJECT
+    }
+
+    private static final int[] NO_INTS = new int[0];
+    private static final int DEFAULT_CAPACITY = 10;
+
+    private Kind kind = Kind.INT;
+    private int[] ints = NO_INTS;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private int size;
+
+    ElementList() {
+    }
+
+    ElementList(int capacity) {
+        this.ints = (capacity > 0) ? new int[capacity] : NO_INTS;
+    }
+
+    /**
+     * Copy a list, with room for one more element.
+     */
+    ElementList(ElementList source) {
+        int capacity = source.size + 1;
+        this.kind = source.kind;
+        this.size = source.size;
+        switch (source.kind) {
+        case INT:
+            this.ints = Arrays.copyOf(source.ints, capacity);
+            break;
+        case LONG:
+            this.ints = null;
+            this.longs = Arrays.copyOf(source.longs, capacity);
+            break;
+        case DOUBLE:
+            this.ints = null;
+            this.doubles = Arrays.copyOf(source.doubles, capacity);
+            break;
+        default:
+            this.ints = null;
+            this.objects = Arrays.copyOf(source.objects, capacity);
+        }
+    }
+
+    Kind kind() {
+        return this.kind;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Object get(int index) {
+        this.checkIndex(index);
+        switch (this.kind) {
+        case INT:
+            return this.ints[index];
+        case LONG:
+            return box(this.longs[index]);
+        case DOUBLE:
+            return this.doubles[index];
+        default:
+            return this.objects[index];
+        }
+    }
+
+    /**
+     * @return the int value of a number of a numeric list.
+     */
+    int intAt(int index) {
+        switch (this.kind) {
+        case INT:
+            return this.ints[index];
+        case LONG:
+            return (int) this.longs[index];
+        default:
+            return (int) this.doubles[index];
+        }
+    }
+
+    /**
+     * @return the long value of a number of a numeric list.
+     */
+    long longAt(int index) {
+        switch (this.kind) {
+        case INT:
+            return this.ints[index];
+        case LONG:
+            return this.longs[index];
+        default:
+            return (long) this.doubles[index];
+        }
+    }
+
+    /**
+     * @return the double value of a number of a numeric list.
+     */
+    double doubleAt(int index) {
+        switch (this.kind) {
+        case INT:
+            return this.ints[index];
+        case LONG:
+            return this.longs[index];
+        default:
+            return this.doubles[index];
+        }
+    }
+
+    @Override
+    public boolean add(Object value) {
+        this.prepare(value, this.size + 1);
+        this.modCount++;
+        this.store(this.size++, value);
+        return true;
+    }
+
+    @Override
+    public Object set(int index, Object value) {
+        this.checkIndex(index);
+        Object previous = this.get(index);
+        this.prepare(value, this.size);
+        this.store(index, value);
+        return previous;
+    }
+
+    @Override
+    public Object remove(int index) {
+        this.checkIndex(index);
+        Object previous = this.get(index);
+        Object array = this.array();
+        System.arraycopy(array, index + 1, array, index, this.size - index - 1);
+        this.size--;
+        if (this.kind == Kind.OBJECT) {
+            this.objects[this.size] = null;
+        }
+        this.modCount++;
+        return previous;
+    }
+
+    /**
+     * Release the unused capacity.
+     */
+    void trimToSize() {
+        switch (this.kind) {
+        case INT:
+            this.ints = (this.size > 0) ? Arrays.copyOf(this.ints, this.size) : NO_INTS;
+            break;
+        case LONG:
+            this.longs = Arrays.copyOf(this.longs, this.size);
+            break;
+        case DOUBLE:
+            this.doubles = Arrays.copyOf(this.doubles, this.size);
+            break;
+        default:
+            this.objects = Arrays.copyOf(this.objects, this.size);
+        }
+    }
+
+    /**
+     * @return the number stored in a <code>long[]</code>, as it was added.
+     */
+    private static Object box(long value) {
+        if (value == (int) value) {
+            return Integer.valueOf((int) value);
+        }
+        return Long.valueOf(value);
+    }
+
+    private static Kind kindOf(Object value) {
+        if (value instanceof Integer) {
+            return Kind.INT;
+        }
+        if (value instanceof Long) {
+            long longValue = (Long) value;
+            return (longValue == (int) longValue) ? Kind.OBJECT : Kind.LONG;
+        }
+        if (value instanceof Double) {
+            return Kind.DOUBLE;
+        }
+        return Kind.OBJECT;
+    }
+
+    /**
+     * Make sure the given value can be stored, switching to a wider kind of
+     * array if needed, with room for the given number of elements.
+     */
+    private void prepare(Object value, int capacity) {
+        Kind wanted = kindOf(value);
+        if (wanted != this.kind && !(wanted == Kind.INT && this.kind == Kind.LONG)) {
+            if (this.size == 0) {
+                this.convert(wanted, Math.max(capacity, this.capacity()));
+                return;
+            }
+            this.convert((wanted == Kind.LONG && this.kind == Kind.INT) ? Kind.LONG : Kind.OBJECT, capacity);
+        }
+        if (capacity > this.capacity()) {
+            int old = this.capacity();
+            this.convert(this.kind, Math.max(capacity, Math.max(old + (old >> 1), DEFAULT_CAPACITY)));
+        }
+    }
+
+    /**
+     * Move the elements to a new array of the given kind.
+     */
+    private void convert(Kind target, int capacity) {
+        int[] oldInts = this.ints;
+        long[] oldLongs = this.longs;
+        double[] oldDoubles = this.doubles;
+        Object[] oldObjects = this.objects;
+        Kind source = this.kind;
+        capacity = Math.max(capacity, this.size);
+
+        this.ints = null;
+        this.longs = null;
+        this.doubles = null;
+        this.objects = null;
+        switch (target) {
+        case INT:
+            this.ints = Arrays.copyOf(oldInts != null ? oldInts : NO_INTS, capacity);
+            break;
+        case LONG:
+            if (source == Kind.INT) {
+                this.longs = new long[capacity];
+                for (int i = 0; i < this.size; i++) {
+                    this.longs[i] = oldInts[i];
+                }
+            } else {
+                this.longs = Arrays.copyOf(oldLongs != null ? oldLongs : new long[0], capacity);
+            }
+            break;
+        case DOUBLE:
+            this.doubles = Arrays.copyOf(oldDoubles != null ? oldDoubles : new double[0], capacity);
+            break;
+        default:
+            this.objects = new Object[capacity];
+            for (int i = 0; i < this.size; i++) {
+                switch (source) {
+                case INT:
+                    this.objects[i] = oldInts[i];
+                    break;
+                case LONG:
+                    this.objects[i] = box(oldLongs[i]);
+                    break;
+                case DOUBLE:
+                    this.objects[i] = oldDoubles[i];
+                    break;
+                default:
+                    this.objects[i] = oldObjects[i];
+                }
+            }
+        }
+        this.kind = target;
+    }
+
+    private void store(int index, Object value) {
+        switch (this.kind) {
+        case INT:
+            this.ints[index] = (Integer) value;
+            break;
+        case LONG:
+            this.longs[index] = ((Number) value).longValue();
+            break;
+        case DOUBLE:
+            this.doubles[index] = (Double) value;
+            break;
+        default:
+            this.objects[index] = value;
+        }
+    }
+
+    private Object array() {
+        switch (this.kind) {
+        case INT:
+            return this.ints;
+        case LONG:
+            return this.longs;
+        case DOUBLE:
+            return this.doubles;
+        default:
+            return this.objects;
+        }
+    }
+
+    private int capacity() {
+        switch (this.kind) {
+        case INT:
+            return this.ints.length;
+        case LONG:
+            return this.longs.length;
+        case DOUBLE:
+            return this.doubles.length;
+        default:
+            return this.objects.length;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Build the frozen, deeply immutable copies of JSON values returned by
+ * <code>JSONObject.freeze</code> and <code>JSONArray.freeze</code>.
+ * <p>
+ * A frozen value is made of frozen objects and arrays only: the Maps,
+ * Collections and arrays found in the source are converted as
+ * <code>JSONObject.wrap</code> does. The frozen objects and arrays are never
+ * copied again, so a value shared by several documents, or kept by a
+ * copy-on-write edit, is shared by their frozen copies as well.
+ * <p>
+ * Nested values are tracked on an explicit stack rather than through
+ * recursive calls, so a document of any depth is frozen in constant stack
+ * space.
+ *
+ * @author GraviteeSource Team
+ */
+final class Freezer {
+
+    /**
+     * What a frozen object or array caches: its hash code, computed when it is
+     * built from the hash codes of its (frozen) members, and its text.
+     */
+    static final class State {
+
+        final int hash;
+        volatile String text;
+        volatile byte[] bytes;
+
+        State(int hash) {
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * An object or an array being frozen.
+     */
+    private static final class Frame {
+
+        /** The value as found in its parent. */
+        final Object source;
+        final JSONObject object;
+        final JSONArray array;
+        final Iterator<String> keys;
+        int index;
+
+        Frame(Object source, Object container) {
+            this.source = source;
+            this.object = (container instanceof JSONObject) ? (JSONObject) container : null;
+            this.array = (container instanceof JSONArray) ? (JSONArray) container : null;
+            this.keys = (this.object != null) ? this.object.keys() : null;
+        }
+
+        boolean hasNext() {
+            return (this.keys != null) ? this.keys.hasNext() : this.index < this.array.length();
+        }
+
+        Object next() {
+            return (this.keys != null) ? this.object.opt(this.keys.next()) : this.array.opt(this.index++);
+        }
+    }
+
+    private Freezer() {
+    }
+
+    /**
+     * Freeze a value.
+     *
+     * @param value any value.
+     * @return the frozen copy of the value if it is an object, an array, a Map,
+     * a Collection or a Java array, the value itself otherwise.
+     * @throws JSONException if the value contains itself.
+     */
+    static Object freeze(Object value) throws JSONException {
+        if (!isMutable(value)) {
+            return value;
+        }
+        Object root = container(value);
+
+        IdentityHashMap<Object, Object> frozen = new IdentityHashMap<Object, Object>();
+        IdentityHashMap<Object, Object> visited = new IdentityHashMap<Object, Object>();
+        ArrayDeque<Frame> stack = new ArrayDeque<Frame>();
+        visited.put(root, root);
+        stack.push(new Frame(value, root));
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.hasNext()) {
+                Object child = frame.next();
+                if (isMutable(child) && !frozen.containsKey(child)) {
+                    Object container = container(child);
+                    if (visited.put(container, container) != null) {
+                        // Visited but not frozen yet: one of its parents
+                        throw new JSONException("Cycle detected while freezing a JSON value");
+                    }
+                    stack.push(new Frame(child, container));
+                }
+            } else {
+                stack.pop();
+                frozen.put(frame.source, (frame.object != null)
+                        ? copy(frame.object, frozen) : copy(frame.array, frozen));
+            }
+        }
+        return frozen.get(value);
+    }
+
+    /**
+     * @return true if the value is an object or an array which is not frozen
+     * yet, a Map, a Collection or a Java array.
+     */
+    private static boolean isMutable(Object value) {
+        if (value instanceof JSONObject) {
+            return !((JSONObject) value).isFrozen();
+        }
+        if (value instanceof JSONArray) {
+            return !((JSONArray) value).isFrozen();
+        }
+        if (value == null) {
+            return false;
+        }
+        switch (ValueKind.of(value.getClass()).wrap) {
+            case COLLECTION:
+            case ARRAY:
+            case MAP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the object or array to freeze for the given mutable value.
+     */
+    private static Object container(Object value) {
+        if (value instanceof JSONObject || value instanceof JSONArray) {
+            return value;
+        }
+        return JSONObject.wrap(value);
+    }
+
+    private static Object frozen(Object value, Map<Object, Object> frozen) {
+        return isMutable(value) ? frozen.get(value) : value;
+    }
+
+    private static JSONObject copy(JSONObject source, Map<Object, Object> frozen) {
+        Map<String, Object> map = new CompactMap(source.length());
+        Iterator<String> keys = source.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, frozen(source.opt(key), frozen));
+        }
+        return object(map);
+    }
+
+    private static JSONArray copy(JSONArray source, Map<Object, Object> frozen) {
+        int length = source.length();
+        ElementList list = new ElementList(length);
+        for (int i = 0; i < length; i++) {
+            list.add(frozen(source.opt(i), frozen));
+        }
+        return array(list);
+    }
+
+    /**
+     * Build a frozen object.
+     *
+     * @param map the members of the object, already frozen.
+     */
+    static JSONObject object(Map<String, Object> map) {
+        int hash = 0;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            hash += entry.getKey().hashCode() ^ entry.getValue().hashCode();
+        }
+        return new JSONObject(map, new State(hash));
+    }
+
+    /**
+     * Build a frozen array.
+     *
+     * @param list the elements of the array, already frozen.
+     */
+    static JSONArray array(ElementList list) {
+        list.trimToSize();
+        int hash = 1;
+        for (Object value : list) {
+            hash = 31 * hash + Objects.hashCode(value);
+        }
+        return new JSONArray(list, new State(hash));
+    }
+
+    /**
+     * Compare two frozen values, member by member. The values shared by both
+     * sides are not compared, and the hash codes of the objects and arrays
+     * are compared before their members.
+     */
+    static boolean equal(Object left, Object right) {
+        List<Object> pairs = new ArrayList<Object>();
+        pairs.add(left);
+        pairs.add(right);
+
+        while (!pairs.isEmpty()) {
+            Object b = pairs.remove(pairs.size() - 1);
+            Object a = pairs.remove(pairs.size() - 1);
+            if (a == b) {
+                continue;
+            }
+            if (a instanceof JSONObject) {
+                if (!(b instanceof JSONObject) || a.hashCode() != b.hashCode()) {
+                    return false;
+                }
+                JSONObject objectA = (JSONObject) a;
+                JSONObject objectB = (JSONObject) b;
+                if (objectA.length() != objectB.length()) {
+                    return false;
+                }
+                Iterator<String> keys = objectA.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    Object value = objectB.opt(key);
+                    if (value == null) {
+                        return false;
+                    }
+                    pairs.add(objectA.opt(key));
+                    pairs.add(value);
+                }
+            } else if (a instanceof JSONArray) {
+                if (!(b instanceof JSONArray) || a.hashCode() != b.hashCode()) {
+                    return false;
+                }
+                JSONArray arrayA = (JSONArray) a;
+                JSONArray arrayB = (JSONArray) b;
+                int length = arrayA.length();
+                if (length != arrayB.length()) {
+                    return false;
+                }
+                for (int i = 0; i < length; i++) {
+                    pairs.add(arrayA.opt(i));
+                    pairs.add(arrayB.opt(i));
+                }
+            } else if (a == null || b == null || !a.equals(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -44,8 +44,8 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
 import java.math.*;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -96,15 +96,35 @@ import java.util.Map;
 public class JSONArray implements Iterable<Object> {
 
     /**
-     * The arrayList where the JSONArray's properties are kept.
+     * The list where the JSONArray's elements are kept. Numbers are kept in
+     * primitive arrays, see {@link ElementList}.
      */
-    private final ArrayList<Object> myArrayList;
+    private final ElementList myArrayList;
+
+    /**
+     * The cached state of a frozen JSONArray, null while it can be modified.
+     */
+    private final Freezer.State frozen;
 
     /**
      * Construct an empty JSONArray.
      */
     public JSONArray() {
-        this.myArrayList = new ArrayList<Object>();
+        this.myArrayList = new ElementList();
+        this.frozen = null;
+    }
+
+    /**
+     * Construct a frozen JSONArray.
+     *
+     * @param list
+     *            The elements of the array, already frozen.
+     * @param frozen
+     *            The state of the frozen array.
+     */
+    JSONArray(ElementList list, Freezer.State frozen) {
+        this.myArrayList = list;
+        this.frozen = frozen;
     }
 
     /**
@@ -167,7 +187,8 @@ public class JSONArray implements Iterable<Object> {
      *            A Collection.
      */
     public JSONArray(Collection<?> collection) {
-        this.myArrayList = new ArrayList<Object>();
+        this.myArrayList = new ElementList();
+        this.frozen = null;
         if (collection != null) {
         	for (Object o: collection){
         		this.myArrayList.add(JSONObject.wrap(o));
@@ -196,6 +217,9 @@ public class JSONArray implements Iterable<Object> {
 
     @Override
     public Iterator<Object> iterator() {
+        if (this.frozen != null) {
+            return Collections.unmodifiableList(this.myArrayList).iterator();
+        }
         return myArrayList.iterator();
     }
 
@@ -252,6 +276,9 @@ public class JSONArray implements Iterable<Object> {
      *             to a number.
      */
     public double getDouble(int index) throws JSONException {
+        if (this.isNumber(index)) {
+            return this.myArrayList.doubleAt(index);
+        }
         Object object = this.get(index);
         try {
             return object instanceof Number ? ((Number) object).doubleValue()
@@ -336,6 +363,9 @@ public class JSONArray implements Iterable<Object> {
      *             If the key is not found or if the value is not a number.
      */
     public int getInt(int index) throws JSONException {
+        if (this.isNumber(index)) {
+            return this.myArrayList.intAt(index);
+        }
         Object object = this.get(index);
         try {
             return object instanceof Number ? ((Number) object).intValue()
@@ -392,6 +422,9 @@ public class JSONArray implements Iterable<Object> {
      *             to a number.
      */
     public long getLong(int index) throws JSONException {
+        if (this.isNumber(index)) {
+            return this.myArrayList.longAt(index);
+        }
         Object object = this.get(index);
         try {
             return object instanceof Number ? ((Number) object).longValue()
@@ -462,6 +495,14 @@ public class JSONArray implements Iterable<Object> {
         return this.myArrayList.size();
     }
 
+    /**
+     * @return true if there is a number at the given index, kept in a
+     *         primitive array.
+     */
+    private boolean isNumber(int index) {
+        return index >= 0 && index < this.length() && this.myArrayList.kind() != ElementList.Kind.OBJECT;
+    }
+
     /**
      * Get the optional object value associated with an index.
      *
@@ -830,6 +871,7 @@ public class JSONArray implements Iterable<Object> {
      * @return this.
      */
     public JSONArray put(Object value) {
+        this.checkNotFrozen();
         this.myArrayList.add(value);
         return this;
     }
@@ -958,6 +1000,7 @@ public class JSONArray implements Iterable<Object> {
      *             number.
      */
     public JSONArray put(int index, Object value) throws JSONException {
+        this.checkNotFrozen();
         JSONObject.testValidity(value);
         if (index < 0) {
             throw new JSONException("JSONArray[" + index + "] not found.");
@@ -973,6 +1016,13 @@ public class JSONArray implements Iterable<Object> {
         return this;
     }
 
+    /**
+     * @return the list where the elements are kept.
+     */
+    ElementList elements() {
+        return this.myArrayList;
+    }
+
     /**
      * Remove an index and close the hole.
      *
@@ -982,11 +1032,125 @@ public class JSONArray implements Iterable<Object> {
      *         was no value.
      */
     public Object remove(int index) {
+        this.checkNotFrozen();
         return index >= 0 && index < this.length()
             ? this.myArrayList.remove(index)
             : null;
     }
 
+    /**
+     * Make a deeply immutable copy of this JSONArray, which can be shared
+     * between threads without being copied again. The nested objects and
+     * arrays are frozen as well, and the Maps, Collections and Java arrays
+     * are converted to frozen objects and arrays; any other value is kept as
+     * it is. The nested values which are frozen already are not copied.
+     * <p>
+     * A frozen JSONArray throws an UnsupportedOperationException when it is
+     * modified. It is compared to other frozen JSONArrays by value rather
+     * than by identity, with a hash code computed once, and caches its text.
+     * Use {@link #with(int, Object)} and {@link #without(int)} to derive a
+     * modified copy.
+     *
+     * @return the frozen copy of this JSONArray, or this JSONArray if it is
+     *         frozen already.
+     * @throws JSONException
+     *             If this JSONArray contains itself.
+     */
+    public JSONArray freeze() throws JSONException {
+        return (JSONArray) Freezer.freeze(this);
+    }
+
+    /**
+     * Determine if this JSONArray is frozen.
+     *
+     * @return true if this JSONArray can not be modified.
+     */
+    public boolean isFrozen() {
+        return this.frozen != null;
+    }
+
+    /**
+     * Make a frozen copy of this JSONArray with an element put or replaced, as
+     * {@link #put(int, Object)} would. The other elements are shared with this
+     * JSONArray rather than copied.
+     *
+     * @param index
+     *            The subscript, <code>length()</code> to append the value.
+     * @param value
+     *            The value, which is frozen as well.
+     * @return a frozen JSONArray.
+     * @throws JSONException
+     *             If the index is negative, if the value is an invalid number
+     *             or if it contains itself.
+     */
+    public JSONArray with(int index, Object value) throws JSONException {
+        JSONObject.testValidity(value);
+        if (index < 0) {
+            throw new JSONException("JSONArray[" + index + "] not found.");
+        }
+        JSONArray source = this.freeze();
+        int length = source.length();
+        ElementList list = new ElementList(source.myArrayList);
+        while (list.size() < index) {
+            list.add(JSONObject.NULL);
+        }
+        if (index < length) {
+            list.set(index, Freezer.freeze(value));
+        } else {
+            list.add(Freezer.freeze(value));
+        }
+        return Freezer.array(list);
+    }
+
+    /**
+     * Make a frozen copy of this JSONArray with an element removed. The other
+     * elements are shared with this JSONArray rather than copied.
+     *
+     * @param index
+     *            The index of the element to be removed.
+     * @return a frozen JSONArray, this JSONArray itself if it is frozen and
+     *         has no such element.
+     * @throws JSONException
+     *             If this JSONArray contains itself.
+     */
+    public JSONArray without(int index) throws JSONException {
+        JSONArray source = this.freeze();
+        int length = source.length();
+        if (index < 0 || index >= length) {
+            return source;
+        }
+        ElementList list = new ElementList(source.myArrayList);
+        list.remove(index);
+        return Freezer.array(list);
+    }
+
+    private void checkNotFrozen() {
+        if (this.frozen != null) {
+            throw new UnsupportedOperationException("A frozen JSONArray can not be modified");
+        }
+    }
+
+    /**
+     * A frozen JSONArray is equal to the frozen JSONArrays having the same
+     * elements. Any other JSONArray is only equal to itself, see
+     * {@link #similar(Object)}.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (this.frozen == null || !(other instanceof JSONArray) || ((JSONArray) other).frozen == null) {
+            return false;
+        }
+        return Freezer.equal(this, other);
+    }
+
+    @Override
+    public int hashCode() {
+        return (this.frozen != null) ? this.frozen.hash : super.hashCode();
+    }
+
     /**
      * Determine if two JSONArrays are similar.
      * They must contain similar sequences.
@@ -1055,8 +1219,41 @@ public class JSONArray implements Iterable<Object> {
      *         array.
      */
     public String toString() {
+        if (this.frozen != null && this.frozen.text != null) {
+            return this.frozen.text;
+        }
         try {
-            return this.toString(0);
+            String text = this.toString(0);
+            if (this.frozen != null) {
+                this.frozen.text = text;
+            }
+            return text;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Make a JSON text of this JSONArray, encoded in UTF-8. No whitespace is
+     * added, and the text is encoded as it is written, without building a
+     * String first.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @return the UTF-8 bytes of the JSON text, or null if it could not be
+     *         made.
+     */
+    public byte[] toByteArray() {
+        if (this.frozen != null && this.frozen.bytes != null) {
+            return this.frozen.bytes.clone();
+        }
+        try (JSONByteWriter writer = new JSONByteWriter()) {
+            this.write(writer, 0, 0);
+            byte[] bytes = writer.toByteArray();
+            if (this.frozen != null) {
+                this.frozen.bytes = bytes.clone();
+            }
+            return bytes;
         } catch (Exception e) {
             return null;
         }
@@ -1112,35 +1309,8 @@ public class JSONArray implements Iterable<Object> {
     public Writer write(Writer writer, int indentFactor, int indent)
             throws JSONException {
         try {
-            boolean commanate = false;
-            int length = this.length();
-            writer.write('[');
-
-            if (length == 1) {
-                JSONObject.writeValue(writer, this.myArrayList.get(0),
-                        indentFactor, indent);
-            } else if (length != 0) {
-                final int newindent = indent + indentFactor;
-
-                for (int i = 0; i < length; i += 1) {
-                    if (commanate) {
-                        writer.write(',');
-                    }
-                    if (indentFactor > 0) {
-                        writer.write('\n');
-                    }
-                    JSONObject.indent(writer, newindent);
-                    JSONObject.writeValue(writer, this.myArrayList.get(i),
-                            indentFactor, newindent);
-                    commanate = true;
-                }
-                if (indentFactor > 0) {
-                    writer.write('\n');
-                }
-                JSONObject.indent(writer, indent);
-            }
-            writer.write(']');
-            return writer;
+            // Nested values are written without recursion, see JSONSerializer
+            return JSONSerializer.write(writer, this, indentFactor, indent);
         } catch (IOException e) {
             throw new JSONException(e);
         }
@@ -0,0 +1,344 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A JSONByteParser parses a UTF-8 encoded JSON text, such as a request body,
+ * without decoding it to a String first.
+ * <p>
+ * Structural characters are read as bytes, and only the keys and the values
+ * of the parsed document are decoded. The accepted syntax and the produced
+ * values are the ones of {@link JSONTokener#nextValue()}.
+ *
+ * @author GraviteeSource Team
+ */
+public class JSONByteParser {
+
+    private static final String DELIMITERS = ",:]}/\\\"[{;=#";
+
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+    private int position;
+
+    /**
+     * Construct a JSONByteParser from a byte array.
+     *
+     * @param bytes The UTF-8 encoded source.
+     */
+    public JSONByteParser(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Construct a JSONByteParser from a part of a byte array.
+     *
+     * @param bytes  The UTF-8 encoded source.
+     * @param offset The index of the first byte to read.
+     * @param length The number of bytes to read.
+     */
+    public JSONByteParser(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+        }
+        this.bytes = bytes;
+        this.buffer = null;
+        this.start = offset;
+        this.end = offset + length;
+        this.position = skipByteOrderMark(offset);
+    }
+
+    /**
+     * Construct a JSONByteParser from the remaining bytes of a ByteBuffer.
+     * The position of the buffer is left untouched.
+     *
+     * @param buffer The UTF-8 encoded source.
+     */
+    public JSONByteParser(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.bytes = buffer.array();
+            this.buffer = null;
+            this.start = buffer.arrayOffset() + buffer.position();
+            this.end = buffer.arrayOffset() + buffer.limit();
+        } else {
+            this.bytes = null;
+            this.buffer = buffer;
+            this.start = buffer.position();
+            this.end = buffer.limit();
+        }
+        this.position = skipByteOrderMark(this.start);
+    }
+
+    /**
+     * Get the next value. The value can be a Boolean, Double, Integer,
+     * JSONArray, JSONObject, Long, or String, or the JSONObject.NULL object.
+     *
+     * @return An object.
+     * @throws JSONException If syntax error.
+     */
+    public Object nextValue() throws JSONException {
+        int c = nextClean();
+        switch (c) {
+            case '"':
+            case '\'':
+                return nextString(c);
+            case '{':
+                return nextObject();
+            case '[':
+                return nextArray();
+        }
+
+        // Unquoted text, the values true, false or null, or a number
+        int from = --position;
+        while (position < end) {
+            int b = at(position);
+            if (b >= 0 && (b < ' ' || DELIMITERS.indexOf(b) >= 0)) {
+                break;
+            }
+            position++;
+        }
+        String string = decode(from, position).trim();
+        if (string.isEmpty()) {
+            throw syntaxError("Missing value");
+        }
+        return JSONObject.stringToValue(string);
+    }
+
+    /**
+     * @return <code>true</code> if there is nothing but whitespaces left to read.
+     */
+    public boolean end() {
+        int c = nextClean();
+        if (c != 0) {
+            position--;
+        }
+        return c == 0;
+    }
+
+    private JSONObject nextObject() throws JSONException {
+        JSONObject object = new JSONObject();
+        for (;;) {
+            int c = nextClean();
+            if (c == 0) {
+                throw syntaxError("A JSONObject text must end with '}'");
+            }
+            if (c == '}') {
+                return object;
+            }
+            position--;
+            String key = nextValue().toString();
+
+            if (nextClean() != ':') {
+                throw syntaxError("Expected a ':' after a key");
+            }
+            object.putOnce(key, nextValue());
+
+            switch (nextClean()) {
+                case ';':
+                case ',':
+                    if (nextClean() == '}') {
+                        return object;
+                    }
+                    position--;
+                    break;
+                case '}':
+                    return object;
+                default:
+                    throw syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+
+    private JSONArray nextArray() throws JSONException {
+        JSONArray array = new JSONArray();
+        if (nextClean() == ']') {
+            return array;
+        }
+        position--;
+        for (;;) {
+            if (nextClean() == ',') {
+                position--;
+                array.put(JSONObject.NULL);
+            } else {
+                position--;
+                array.put(nextValue());
+            }
+            switch (nextClean()) {
+                case ',':
+                    if (nextClean() == ']') {
+                        return array;
+                    }
+                    position--;
+                    break;
+                case ']':
+                    return array;
+                default:
+                    throw syntaxError("Expected a ',' or ']'");
+            }
+        }
+    }
+
+    private String nextString(int quote) throws JSONException {
+        int from = position;
+        boolean ascii = true;
+        while (position < end) {
+            int b = at(position);
+            if (b == quote) {
+                String string = ascii ? latin1(from, position) : decode(from, position);
+                position++;
+                return string;
+            }
+            if (b == '\\') {
+                return nextEscapedString(quote, from);
+            }
+            if (b == 0 || b == '\n' || b == '\r') {
+                break;
+            }
+            ascii &= b >= 0;
+            position++;
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private String nextEscapedString(int quote, int from) throws JSONException {
+        StringBuilder sb = new StringBuilder(position - from + 16);
+        int segment = from;
+        while (position < end) {
+            int b = at(position);
+            if (b == quote) {
+                sb.append(decode(segment, position));
+                position++;
+                return sb.toString();
+            }
+            if (b == 0 || b == '\n' || b == '\r') {
+                break;
+            }
+            if (b != '\\') {
+                position++;
+                continue;
+            }
+
+            sb.append(decode(segment, position));
+            position++;
+            int escaped = (position < end) ? at(position++) : 0;
+            switch (escaped) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'u':
+                    sb.append(nextUnicodeEscape());
+                    break;
+                case '"':
+                case '\'':
+                case '\\':
+                case '/':
+                    sb.append((char) escaped);
+                    break;
+                default:
+                    throw syntaxError("Illegal escape.");
+            }
+            segment = position;
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private char nextUnicodeEscape() throws JSONException {
+        if (position + 4 > end) {
+            throw syntaxError("Substring bounds error");
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = JSONTokener.dehexchar((char) at(position++));
+            if (digit < 0) {
+                throw syntaxError("Illegal escape.");
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    /**
+     * @return the next byte which is not a whitespace, or 0 at the end of the source.
+     */
+    private int nextClean() {
+        while (position < end) {
+            int b = at(position++);
+            if (b > ' ' || b < 0) {
+                return b;
+            }
+            if (b == 0) {
+                return 0;
+            }
+        }
+        position = end + 1;
+        return 0;
+    }
+
+    private int at(int i) {
+        return (bytes != null) ? bytes[i] : buffer.get(i);
+    }
+
+    private int skipByteOrderMark(int i) {
+        if (end - i >= 3 && at(i) == (byte) 0xEF && at(i + 1) == (byte) 0xBB && at(i + 2) == (byte) 0xBF) {
+            return i + 3;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("deprecation")
+    private String latin1(int from, int to) {
+        if (bytes != null) {
+            // Only used for ASCII, which is its own Latin-1 and UTF-8 encoding
+            return new String(bytes, 0, from, to - from);
+        }
+        return new String(copy(from, to), 0);
+    }
+
+    private String decode(int from, int to) {
+        if (bytes != null) {
+            return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        }
+        return new String(copy(from, to), StandardCharsets.UTF_8);
+    }
+
+    private byte[] copy(int from, int to) {
+        byte[] copy = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            copy[i - from] = buffer.get(i);
+        }
+        return copy;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at " + (Math.min(position, end) - start));
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A Writer encoding a JSON text to UTF-8 as it is written, so that a JSON
+ * document can be serialized to bytes without building a String first.
+ * <pre>
+ * try (JSONByteWriter writer = new JSONByteWriter()) {
+ *     object.write(writer);
+ *     return writer.toByteArray();
+ * }
+ * </pre>
+ * The bytes are written to a scratch array reused by the next writer of the
+ * same thread once this one is closed: producing a document only costs the
+ * final copy made by {@link #toByteArray()}. A writer is not thread-safe.
+ *
+ * @author GraviteeSource Team
+ */
+public class JSONByteWriter extends Writer {
+
+    private static final int INITIAL_SIZE = 1024;
+
+    /**
+     * Scratch arrays larger than this are left to the garbage collector.
+     */
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>();
+
+    private byte[] bytes;
+    private int count;
+    private char highSurrogate;
+
+    public JSONByteWriter() {
+        byte[] scratch = SCRATCH.get();
+        if (scratch != null) {
+            // Taken from the pool, in case another writer is opened before this one is closed
+            SCRATCH.set(null);
+            this.bytes = scratch;
+        } else {
+            this.bytes = new byte[INITIAL_SIZE];
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        this.ensureOpen();
+        this.ensureCapacity(4);
+        this.encode((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        this.ensureOpen();
+        this.ensureCapacity(length * 3 + 1);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = chars[i];
+            if (c < 0x80 && this.highSurrogate == 0) {
+                this.bytes[this.count++] = (byte) c;
+            } else {
+                this.encode(c);
+            }
+        }
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+        this.ensureOpen();
+        this.ensureCapacity(length * 3 + 1);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80 && this.highSurrogate == 0) {
+                this.bytes[this.count++] = (byte) c;
+            } else {
+                this.encode(c);
+            }
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+        if (csq instanceof String) {
+            this.write((String) csq, start, end - start);
+        } else {
+            this.write(String.valueOf(csq == null ? "null" : csq.subSequence(start, end)));
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Give the scratch array back to the thread pool. The writer can not be
+     * used anymore.
+     */
+    @Override
+    public void close() {
+        if (this.bytes != null) {
+            if (this.bytes.length <= MAX_POOLED_SIZE && SCRATCH.get() == null) {
+                SCRATCH.set(this.bytes);
+            }
+            this.bytes = null;
+        }
+    }
+
+    /**
+     * @return The number of bytes written so far.
+     */
+    public int size() {
+        return this.count + (this.highSurrogate != 0 ? 1 : 0);
+    }
+
+    /**
+     * @return A copy of the bytes written so far.
+     */
+    public byte[] toByteArray() throws IOException {
+        this.ensureOpen();
+        this.flushSurrogate();
+        return Arrays.copyOf(this.bytes, this.count);
+    }
+
+    /**
+     * Write the bytes written so far to an OutputStream.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        this.ensureOpen();
+        this.flushSurrogate();
+        out.write(this.bytes, 0, this.count);
+    }
+
+    private void encode(char c) {
+        if (this.highSurrogate != 0) {
+            char high = this.highSurrogate;
+            this.highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                this.bytes[this.count++] = (byte) (0xf0 | (codePoint >> 18));
+                this.bytes[this.count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                this.bytes[this.count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                this.bytes[this.count++] = (byte) (0x80 | (codePoint & 0x3f));
+                return;
+            }
+            // An unpaired surrogate, replaced as String.getBytes does
+            this.bytes[this.count++] = '?';
+        }
+
+        if (c < 0x80) {
+            this.bytes[this.count++] = (byte) c;
+        } else if (c < 0x800) {
+            this.bytes[this.count++] = (byte) (0xc0 | (c >> 6));
+            this.bytes[this.count++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)) {
+            this.highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            this.bytes[this.count++] = '?';
+        } else {
+            this.bytes[this.count++] = (byte) (0xe0 | (c >> 12));
+            this.bytes[this.count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            this.bytes[this.count++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    private void flushSurrogate() {
+        if (this.highSurrogate != 0) {
+            this.highSurrogate = 0;
+            this.ensureCapacity(1);
+            this.bytes[this.count++] = '?';
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        // A pending high surrogate may add one byte to the extra ones
+        int required = this.count + extra + 1;
+        if (required < 0) {
+            throw new OutOfMemoryError("JSON text too large");
+        }
+        if (required > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(required, this.bytes.length * 2));
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.bytes == null) {
+            throw new IOException("Writer closed");
+        }
+    }
+}
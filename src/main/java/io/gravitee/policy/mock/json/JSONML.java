@@ -54,7 +54,7 @@ public class JSONML {
 
     /**
      * Parse XML values and store them in a JSONArray.
-     * @param x       The XMLTokener containing the source string.
+     * @param x       The XMLScanner or XMLTokener containing the source string.
      * @param arrayForm true if array form, false if object form.
      * @param ja      The JSONArray that is containing the current tag or null
      *     if we are at the outermost level.
@@ -62,7 +62,7 @@ public class JSONML {
      * @throws JSONException
      */
     private static Object parse(
-        XMLTokener x,
+        XMLInput   x,
         boolean    arrayForm,
         JSONArray  ja
     ) throws JSONException {
@@ -263,7 +263,7 @@ public class JSONML {
      * @throws JSONException
      */
     public static JSONArray toJSONArray(String string) throws JSONException {
-        return toJSONArray(new XMLTokener(string));
+        return (JSONArray)parse(new XMLScanner(string), true, null);
     }
 
 
@@ -316,7 +316,7 @@ public class JSONML {
      * @throws JSONException
      */
     public static JSONObject toJSONObject(String string) throws JSONException {
-        return toJSONObject(new XMLTokener(string));
+        return (JSONObject)parse(new XMLScanner(string), false, null);
     }
 
 
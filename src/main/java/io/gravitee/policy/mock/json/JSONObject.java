@@ -43,13 +43,11 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
@@ -153,10 +151,17 @@ public class JSONObject {
     }
 
     /**
-     * The map where the JSONObject's properties are kept.
+     * The map where the JSONObject's properties are kept. Small objects are
+     * kept in arrays rather than in a hash table, see {@link CompactMap}. Members
+     * are iterated in insertion order.
      */
     private final Map<String, Object> map;
 
+    /**
+     * The cached state of a frozen JSONObject, null while it can be modified.
+     */
+    private final Freezer.State frozen;
+
     /**
      * It is sometimes more convenient and less ambiguous to have a
      * <code>NULL</code> object than to use Java's <code>null</code> value.
@@ -169,7 +174,21 @@ public class JSONObject {
      * Construct an empty JSONObject.
      */
     public JSONObject() {
-        this.map = new HashMap<String, Object>();
+        this.map = new CompactMap();
+        this.frozen = null;
+    }
+
+    /**
+     * Construct a frozen JSONObject.
+     *
+     * @param map
+     *            The members of the object, already frozen.
+     * @param frozen
+     *            The state of the frozen object.
+     */
+    JSONObject(Map<String, Object> map, Freezer.State frozen) {
+        this.map = map;
+        this.frozen = frozen;
     }
 
     /**
@@ -255,7 +274,8 @@ public class JSONObject {
      *            the JSONObject.
      */
     public JSONObject(Map<?, ?> map) {
-        this.map = new HashMap<String, Object>();
+        this.map = new CompactMap((map != null) ? map.size() : 0);
+        this.frozen = null;
         if (map != null) {
         	for (final Entry<?, ?> e : map.entrySet()) {
                 final Object value = e.getValue();
@@ -809,6 +829,9 @@ public class JSONObject {
      * @return A keySet.
      */
     public Set<String> keySet() {
+        if (this.frozen != null) {
+            return Collections.unmodifiableSet(this.map.keySet());
+        }
         return this.map.keySet();
     }
 
@@ -1143,49 +1166,8 @@ public class JSONObject {
     }
 
     private void populateMap(Object bean) {
-        Class<?> klass = bean.getClass();
-
-// If klass is a System class then set includeSuperClass to false.
-
-        boolean includeSuperClass = klass.getClassLoader() != null;
-
-        Method[] methods = includeSuperClass ? klass.getMethods() : klass
-                .getDeclaredMethods();
-        for (int i = 0; i < methods.length; i += 1) {
-            try {
-                Method method = methods[i];
-                if (Modifier.isPublic(method.getModifiers())) {
-                    String name = method.getName();
-                    String key = "";
-                    if (name.startsWith("get")) {
-                        if ("getClass".equals(name)
-                                || "getDeclaringClass".equals(name)) {
-                            key = "";
-                        } else {
-                            key = name.substring(3);
-                        }
-                    } else if (name.startsWith("is")) {
-                        key = name.substring(2);
-                    }
-                    if (key.length() > 0
-                            && Character.isUpperCase(key.charAt(0))
-                            && method.getParameterTypes().length == 0) {
-                        if (key.length() == 1) {
-                            key = key.toLowerCase();
-                        } else if (!Character.isUpperCase(key.charAt(1))) {
-                            key = key.substring(0, 1).toLowerCase()
-                                    + key.substring(1);
-                        }
-
-                        Object result = method.invoke(bean, (Object[]) null);
-                        if (result != null) {
-                            this.map.put(key, wrap(result));
-                        }
-                    }
-                }
-            } catch (Exception ignore) {
-            }
-        }
+        // The getters of a class are looked up once, see BeanGetters
+        BeanGetters.of(bean.getClass()).populate(bean, this.map);
     }
 
     /**
@@ -1302,6 +1284,7 @@ public class JSONObject {
         if (key == null) {
             throw new NullPointerException("Null key.");
         }
+        this.checkNotFrozen();
         if (value != null) {
             testValidity(value);
             this.map.put(key, value);
@@ -1364,74 +1347,134 @@ public class JSONObject {
      * @return A String correctly formatted for insertion in a JSON text.
      */
     public static String quote(String string) {
-        StringWriter sw = new StringWriter();
-        synchronized (sw.getBuffer()) {
-            try {
-                return quote(string, sw).toString();
-            } catch (IOException ignored) {
-                // will never happen - we are writing to a string writer
-                return "";
-            }
+        if (string == null || string.length() == 0) {
+            return "\"\"";
+        }
+        int first = firstEscape(string, 0);
+        if (first < 0) {
+            char[] chars = new char[string.length() + 2];
+            chars[0] = '"';
+            string.getChars(0, string.length(), chars, 1);
+            chars[chars.length - 1] = '"';
+            return new String(chars);
         }
+        return quote(string, new StringBuilder(string.length() + 16)).toString();
+    }
+
+    /**
+     * Append a string in double quotes with backslash sequences, as
+     * {@link #quote(String)} does.
+     *
+     * @param string
+     *            A String
+     * @param sb
+     *            The StringBuilder to append to.
+     * @return The StringBuilder.
+     */
+    public static StringBuilder quote(String string, StringBuilder sb) {
+        try {
+            quoteTo(string, sb);
+        } catch (IOException ignored) {
+            // will never happen - we are appending to a string builder
+        }
+        return sb;
+    }
+
+    /**
+     * Append a string in double quotes with backslash sequences, as
+     * {@link #quote(String)} does.
+     *
+     * @param string
+     *            A String
+     * @param appendable
+     *            The Appendable to append to.
+     * @return The Appendable.
+     * @throws IOException
+     */
+    public static Appendable quote(String string, Appendable appendable) throws IOException {
+        quoteTo(string, appendable);
+        return appendable;
     }
 
     public static Writer quote(String string, Writer w) throws IOException {
-        if (string == null || string.length() == 0) {
-            w.write("\"\"");
-            return w;
+        quoteTo(string, w);
+        return w;
+    }
+
+    /**
+     * The escape sequences of the ASCII characters, null for the characters
+     * written as is. The slash is only escaped after a <code>&lt;</code>.
+     */
+    private static final String[] ASCII_ESCAPES = new String[128];
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static {
+        for (char c = 0; c < ' '; c++) {
+            ASCII_ESCAPES[c] = unicodeEscape(c);
         }
+        ASCII_ESCAPES['\b'] = "\\b";
+        ASCII_ESCAPES['\t'] = "\\t";
+        ASCII_ESCAPES['\n'] = "\\n";
+        ASCII_ESCAPES['\f'] = "\\f";
+        ASCII_ESCAPES['\r'] = "\\r";
+        ASCII_ESCAPES['"'] = "\\\"";
+        ASCII_ESCAPES['\\'] = "\\\\";
+        ASCII_ESCAPES['/'] = "\\/";
+    }
 
-        char b;
-        char c = 0;
-        String hhhh;
-        int i;
-        int len = string.length();
+    private static String unicodeEscape(char c) {
+        return new String(new char[] {'\\', 'u', HEX_DIGITS[c >>> 12], HEX_DIGITS[(c >>> 8) & 0xf],
+                HEX_DIGITS[(c >>> 4) & 0xf], HEX_DIGITS[c & 0xf]});
+    }
 
-        w.write('"');
-        for (i = 0; i < len; i += 1) {
-            b = c;
-            c = string.charAt(i);
-            switch (c) {
-            case '\\':
-            case '"':
-                w.write('\\');
-                w.write(c);
-                break;
-            case '/':
-                if (b == '<') {
-                    w.write('\\');
-                }
-                w.write(c);
-                break;
-            case '\b':
-                w.write("\\b");
-                break;
-            case '\t':
-                w.write("\\t");
-                break;
-            case '\n':
-                w.write("\\n");
-                break;
-            case '\f':
-                w.write("\\f");
-                break;
-            case '\r':
-                w.write("\\r");
-                break;
-            default:
-                if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
-                        || (c >= '\u2000' && c < '\u2100')) {
-                    w.write("\\u");
-                    hhhh = Integer.toHexString(c);
-                    w.write("0000", 0, 4 - hhhh.length());
-                    w.write(hhhh);
-                } else {
-                    w.write(c);
+    /**
+     * @return The index of the first character to escape from the given
+     *         index, or -1 if there is none.
+     */
+    private static int firstEscape(String string, int from) {
+        for (int i = from, len = string.length(); i < len; i++) {
+            char c = string.charAt(i);
+            if (c < 128) {
+                if (ASCII_ESCAPES[c] != null && (c != '/' || (i > 0 && string.charAt(i - 1) == '<'))) {
+                    return i;
                 }
+            } else if (c < '\u00a0' || (c >= '\u2000' && c < '\u2100')) {
+                return i;
             }
         }
-        w.write('"');
-        return w;
+        return -1;
+    }
+
+    private static void quoteTo(String string, Appendable appendable) throws IOException {
+        if (string == null || string.length() == 0) {
+            appendable.append("\"\"");
+            return;
+        }
+
+        int len = string.length();
+        int run = 0;
+        appendable.append('"');
+        for (int i = firstEscape(string, 0); i >= 0; i = firstEscape(string, run)) {
+            appendRun(appendable, string, run, i);
+            char c = string.charAt(i);
+            appendable.append(c < 128 ? ASCII_ESCAPES[c] : unicodeEscape(c));
+            run = i + 1;
+        }
+        appendRun(appendable, string, run, len);
+        appendable.append('"');
+    }
+
+    private static void appendRun(Appendable appendable, String string, int start, int end) throws IOException {
+        if (start == end) {
+            return;
+        }
+        if (appendable instanceof Writer) {
+            // Writer.append(CharSequence, int, int) copies the run to a new String
+            ((Writer) appendable).write(string, start, end - start);
+        } else {
+            appendable.append(string, start, end);
+        }
     }
 
     /**
@@ -1443,6 +1486,7 @@ public class JSONObject {
      *         no value.
      */
     public Object remove(String key) {
+        this.checkNotFrozen();
         return this.map.remove(key);
     }
 
@@ -1486,6 +1530,118 @@ public class JSONObject {
         }
     }
 
+    /**
+     * Make a deeply immutable copy of this JSONObject, which can be shared
+     * between threads without being copied again. The nested objects and
+     * arrays are frozen as well, and the Maps, Collections and Java arrays
+     * are converted to frozen objects and arrays; any other value is kept as
+     * it is. The nested values which are frozen already are not copied.
+     * <p>
+     * A frozen JSONObject throws an UnsupportedOperationException when it is
+     * modified. It is compared to other frozen JSONObjects by value rather
+     * than by identity, with a hash code computed once, and caches its text.
+     * Use {@link #with(String, Object)} and {@link #without(String)} to
+     * derive a modified copy.
+     *
+     * @return the frozen copy of this JSONObject, or this JSONObject if it is
+     *         frozen already.
+     * @throws JSONException
+     *             If this JSONObject contains itself.
+     */
+    public JSONObject freeze() throws JSONException {
+        return (JSONObject) Freezer.freeze(this);
+    }
+
+    /**
+     * Determine if this JSONObject is frozen.
+     *
+     * @return true if this JSONObject can not be modified.
+     */
+    public boolean isFrozen() {
+        return this.frozen != null;
+    }
+
+    /**
+     * Make a frozen copy of this JSONObject with a member put, as
+     * {@link #put(String, Object)} would. The other members are shared with
+     * this JSONObject rather than copied.
+     *
+     * @param key
+     *            A key string.
+     * @param value
+     *            The value, which is frozen as well. If it is null, the key is
+     *            removed.
+     * @return a frozen JSONObject.
+     * @throws JSONException
+     *             If the value is non-finite number, or if it contains itself.
+     */
+    public JSONObject with(String key, Object value) throws JSONException {
+        if (key == null) {
+            throw new NullPointerException("Null key.");
+        }
+        if (value == null) {
+            return this.without(key);
+        }
+        testValidity(value);
+        JSONObject source = this.freeze();
+        Map<String, Object> map = new CompactMap(source.length() + (source.has(key) ? 0 : 1));
+        map.putAll(source.map);
+        map.put(key, Freezer.freeze(value));
+        return Freezer.object(map);
+    }
+
+    /**
+     * Make a frozen copy of this JSONObject with a member removed. The other
+     * members are shared with this JSONObject rather than copied.
+     *
+     * @param key
+     *            The name to be removed.
+     * @return a frozen JSONObject, this JSONObject itself if it is frozen and
+     *         has no such member.
+     * @throws JSONException
+     *             If this JSONObject contains itself.
+     */
+    public JSONObject without(String key) throws JSONException {
+        JSONObject source = this.freeze();
+        if (!source.has(key)) {
+            return source;
+        }
+        Map<String, Object> map = new CompactMap(source.length() - 1);
+        for (Entry<String, Object> entry : source.map.entrySet()) {
+            if (!entry.getKey().equals(key)) {
+                map.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return Freezer.object(map);
+    }
+
+    private void checkNotFrozen() {
+        if (this.frozen != null) {
+            throw new UnsupportedOperationException("A frozen JSONObject can not be modified");
+        }
+    }
+
+    /**
+     * A frozen JSONObject is equal to the frozen JSONObjects having the same
+     * members. Any other JSONObject is only equal to itself, see
+     * {@link #similar(Object)}.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (this.frozen == null || !(other instanceof JSONObject) || ((JSONObject) other).frozen == null) {
+            return false;
+        }
+        return Freezer.equal(this, other);
+    }
+
+    @Override
+    public int hashCode() {
+        return (this.frozen != null) ? this.frozen.hash : super.hashCode();
+    }
+
     /**
      * Try to convert a string into a number, boolean, or null. If the string
      * can't be converted, return the string.
@@ -1515,24 +1671,9 @@ public class JSONObject {
 
         char initial = string.charAt(0);
         if ((initial >= '0' && initial <= '9') || initial == '-') {
-            try {
-                if (string.indexOf('.') > -1 || string.indexOf('e') > -1
-                        || string.indexOf('E') > -1
-                        || "-0".equals(string)) {
-                    Double d = Double.valueOf(string);
-                    if (!d.isInfinite() && !d.isNaN()) {
-                        return d;
-                    }
-                } else {
-                    Long myLong = new Long(string);
-                    if (string.equals(myLong.toString())) {
-                        if (myLong.longValue() == myLong.intValue()) {
-                            return Integer.valueOf(myLong.intValue());
-                        }
-                        return myLong;
-                    }
-                }
-            } catch (Exception ignore) {
+            Number number = NumberScanner.parse(string);
+            if (number != null) {
+                return number;
             }
         }
         return string;
@@ -1597,8 +1738,41 @@ public class JSONObject {
      *         brace)</small>.
      */
     public String toString() {
+        if (this.frozen != null && this.frozen.text != null) {
+            return this.frozen.text;
+        }
         try {
-            return this.toString(0);
+            String text = this.toString(0);
+            if (this.frozen != null) {
+                this.frozen.text = text;
+            }
+            return text;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Make a JSON text of this JSONObject, encoded in UTF-8. No whitespace is
+     * added, and the text is encoded as it is written, without building a
+     * String first.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @return the UTF-8 bytes of the JSON text, or null if it could not be
+     *         made.
+     */
+    public byte[] toByteArray() {
+        if (this.frozen != null && this.frozen.bytes != null) {
+            return this.frozen.bytes.clone();
+        }
+        try (JSONByteWriter writer = new JSONByteWriter()) {
+            this.write(writer, 0, 0);
+            byte[] bytes = writer.toByteArray();
+            if (this.frozen != null) {
+                this.frozen.bytes = bytes.clone();
+            }
+            return bytes;
         } catch (Exception e) {
             return null;
         }
@@ -1703,37 +1877,24 @@ public class JSONObject {
             if (object == null) {
                 return NULL;
             }
-            if (object instanceof JSONObject || object instanceof JSONArray
-                    || NULL.equals(object) || object instanceof JSONString
-                    || object instanceof Byte || object instanceof Character
-                    || object instanceof Short || object instanceof Integer
-                    || object instanceof Long || object instanceof Boolean
-                    || object instanceof Float || object instanceof Double
-                    || object instanceof String || object instanceof BigInteger
-                    || object instanceof BigDecimal) {
-                return object;
-            }
 
-            if (object instanceof Collection) {
+            // The type tests are run once per class, see ValueKind
+            switch (ValueKind.of(object.getClass()).wrap) {
+            case AS_IS:
+                return object;
+            case COLLECTION:
                 Collection<?> coll = (Collection<?>) object;
                 return new JSONArray(coll);
-            }
-            if (object.getClass().isArray()) {
+            case ARRAY:
                 return new JSONArray(object);
-            }
-            if (object instanceof Map) {
+            case MAP:
                 Map<?, ?> map = (Map<?, ?>) object;
                 return new JSONObject(map);
-            }
-            Package objectPackage = object.getClass().getPackage();
-            String objectPackageName = objectPackage != null ? objectPackage
-                    .getName() : "";
-            if (objectPackageName.startsWith("java.")
-                    || objectPackageName.startsWith("javax.")
-                    || object.getClass().getClassLoader() == null) {
+            case TO_STRING:
                 return object.toString();
+            default:
+                return new JSONObject(object);
             }
-            return new JSONObject(object);
         } catch (Exception exception) {
             return null;
         }
@@ -1754,36 +1915,7 @@ public class JSONObject {
 
     static final Writer writeValue(Writer writer, Object value,
             int indentFactor, int indent) throws JSONException, IOException {
-        if (value == null || value.equals(null)) {
-            writer.write("null");
-        } else if (value instanceof JSONObject) {
-            ((JSONObject) value).write(writer, indentFactor, indent);
-        } else if (value instanceof JSONArray) {
-            ((JSONArray) value).write(writer, indentFactor, indent);
-        } else if (value instanceof Map) {
-            Map<?, ?> map = (Map<?, ?>) value;
-            new JSONObject(map).write(writer, indentFactor, indent);
-        } else if (value instanceof Collection) {
-            Collection<?> coll = (Collection<?>) value;
-            new JSONArray(coll).write(writer, indentFactor, indent);
-        } else if (value.getClass().isArray()) {
-            new JSONArray(value).write(writer, indentFactor, indent);
-        } else if (value instanceof Number) {
-            writer.write(numberToString((Number) value));
-        } else if (value instanceof Boolean) {
-            writer.write(value.toString());
-        } else if (value instanceof JSONString) {
-            Object o;
-            try {
-                o = ((JSONString) value).toJSONString();
-            } catch (Exception e) {
-                throw new JSONException(e);
-            }
-            writer.write(o != null ? o.toString() : quote(value.toString()));
-        } else {
-            quote(value.toString(), writer);
-        }
-        return writer;
+        return JSONSerializer.write(writer, value, indentFactor, indent);
     }
 
     static final void indent(Writer writer, int indent) throws IOException {
@@ -1810,45 +1942,8 @@ public class JSONObject {
     public Writer write(Writer writer, int indentFactor, int indent)
             throws JSONException {
         try {
-            boolean commanate = false;
-            final int length = this.length();
-            Iterator<String> keys = this.keys();
-            writer.write('{');
-
-            if (length == 1) {
-                Object key = keys.next();
-                writer.write(quote(key.toString()));
-                writer.write(':');
-                if (indentFactor > 0) {
-                    writer.write(' ');
-                }
-                writeValue(writer, this.map.get(key), indentFactor, indent);
-            } else if (length != 0) {
-                final int newindent = indent + indentFactor;
-                while (keys.hasNext()) {
-                    Object key = keys.next();
-                    if (commanate) {
-                        writer.write(',');
-                    }
-                    if (indentFactor > 0) {
-                        writer.write('\n');
-                    }
-                    indent(writer, newindent);
-                    writer.write(quote(key.toString()));
-                    writer.write(':');
-                    if (indentFactor > 0) {
-                        writer.write(' ');
-                    }
-                    writeValue(writer, this.map.get(key), indentFactor, newindent);
-                    commanate = true;
-                }
-                if (indentFactor > 0) {
-                    writer.write('\n');
-                }
-                indent(writer, indent);
-            }
-            writer.write('}');
-            return writer;
+            // Nested values are written without recursion, see JSONSerializer
+            return JSONSerializer.write(writer, this, indentFactor, indent);
         } catch (IOException exception) {
             throw new JSONException(exception);
         }
@@ -0,0 +1,638 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled JSONPath (<code>$.store.book[0].title</code>) or JSON Pointer
+ * (<code>/store/book/0/title</code>) expression.
+ * <p>
+ * An expression is parsed once into a sequence of steps, and the compiled
+ * expressions are kept by {@link #compile(String)}, so running a query does
+ * not parse anything. The supported JSONPath syntax is:
+ * <ul>
+ * <li><code>$</code>, the document itself,</li>
+ * <li><code>.name</code>, <code>['name']</code> and <code>["name"]</code>, a
+ * member,</li>
+ * <li><code>[1]</code> and <code>[-1]</code>, an element, counted from the end
+ * when negative,</li>
+ * <li><code>.*</code> and <code>[*]</code>, all members or elements,</li>
+ * <li><code>['a','b']</code> and <code>[0,2]</code>, several members or
+ * elements,</li>
+ * <li><code>[start:end:step]</code>, a slice of an array, each bound being
+ * optional,</li>
+ * <li><code>..</code>, the value and all the values nested in it, followed by
+ * any of the above: <code>$..title</code>.</li>
+ * </ul>
+ * Filter expressions are not supported.
+ * <p>
+ * A JSONPath made of member names only, and a JSON Pointer, address at most
+ * one value: such a definite expression can also be evaluated against a JSON
+ * text, see {@link #queryFrom(String)}.
+ *
+ * @author GraviteeSource Team
+ */
+public final class JSONPath {
+
+    /**
+     * The number of compiled expressions kept by {@link #compile(String)}.
+     * Expressions come from the mock configuration rather than from the
+     * requests, beyond this number they are compiled on each call.
+     */
+    private static final int MAX_CACHED = 1024;
+
+    private static final ConcurrentHashMap<String, JSONPath> COMPILED = new ConcurrentHashMap<String, JSONPath>();
+
+    private final String expression;
+    private final Step[] steps;
+
+    /**
+     * The steps of a definite expression, null otherwise.
+     */
+    private final DefiniteStep[] definiteSteps;
+
+    /**
+     * The equivalent JSON Pointer of a definite expression, null otherwise.
+     */
+    private final JSONPointer pointer;
+
+    private JSONPath(String expression, Step[] steps, JSONPointer pointer) {
+        this.expression = expression;
+        this.steps = steps;
+        this.pointer = pointer;
+        DefiniteStep[] definiteSteps = new DefiniteStep[steps.length];
+        for (int i = 0; i < steps.length && definiteSteps != null; i++) {
+            if (steps[i] instanceof DefiniteStep) {
+                definiteSteps[i] = (DefiniteStep) steps[i];
+            } else {
+                definiteSteps = null;
+            }
+        }
+        this.definiteSteps = definiteSteps;
+    }
+
+    /**
+     * Compile an expression, or get the expression compiled by a previous
+     * call.
+     *
+     * @param expression a JSONPath, starting with <code>$</code>, or a JSON
+     *                   Pointer, either empty or starting with <code>/</code>.
+     * @return the compiled expression.
+     * @throws IllegalArgumentException if the expression is not valid.
+     */
+    public static JSONPath compile(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("expression cannot be null");
+        }
+        JSONPath path = COMPILED.get(expression);
+        if (path == null) {
+            path = parse(expression);
+            if (COMPILED.size() < MAX_CACHED) {
+                COMPILED.putIfAbsent(expression, path);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * @return true if this expression addresses at most one value.
+     */
+    public boolean isDefinite() {
+        return this.definiteSteps != null;
+    }
+
+    /**
+     * Evaluate this expression against a parsed document.
+     *
+     * @param document a JSONObject, a JSONArray or any other value.
+     * @return for a definite expression, the addressed value or null if there
+     *         is no such value; otherwise, a JSONArray of the addressed values,
+     *         in document order.
+     */
+    public Object query(Object document) {
+        if (this.definiteSteps != null) {
+            Object current = document;
+            for (int i = 0; i < this.definiteSteps.length && current != null; i++) {
+                current = this.definiteSteps[i].select(current);
+            }
+            return current;
+        }
+        return new JSONArray(this.queryAll(document));
+    }
+
+    /**
+     * Evaluate this expression against a parsed document.
+     *
+     * @param document a JSONObject, a JSONArray or any other value.
+     * @return the addressed values, in document order.
+     */
+    public List<Object> queryAll(Object document) {
+        if (this.definiteSteps != null) {
+            Object value = this.query(document);
+            return (value == null) ? Collections.emptyList() : Collections.singletonList(value);
+        }
+
+        List<Object> current = Collections.singletonList(document);
+        for (Step step : this.steps) {
+            List<Object> next = new ArrayList<Object>();
+            for (Object node : current) {
+                step.collect(node, next);
+            }
+            if (next.isEmpty()) {
+                return next;
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * Evaluate a definite expression against a JSON text, parsing the
+     * addressed value only, as {@link JSONPointer#queryFrom(String)} does.
+     *
+     * @param source a JSON text.
+     * @return the addressed value, or null if there is no such value.
+     * @throws JSONException if the text can not be scanned up to the value.
+     * @throws IllegalStateException if this expression is not definite.
+     */
+    public Object queryFrom(String source) throws JSONException {
+        if (this.pointer == null) {
+            throw new IllegalStateException("Only a definite expression can be evaluated against a JSON text");
+        }
+        return this.pointer.queryFrom(source);
+    }
+
+    /**
+     * Evaluate a definite expression against a UTF-8 encoded JSON text,
+     * parsing the addressed value only, as {@link JSONPointer#queryFrom(byte[])}
+     * does.
+     *
+     * @param source a UTF-8 encoded JSON text.
+     * @return the addressed value, or null if there is no such value.
+     * @throws JSONException if the text can not be scanned up to the value.
+     * @throws IllegalStateException if this expression is not definite.
+     */
+    public Object queryFrom(byte[] source) throws JSONException {
+        if (this.pointer == null) {
+            throw new IllegalStateException("Only a definite expression can be evaluated against a JSON text");
+        }
+        return this.pointer.queryFrom(source);
+    }
+
+    /**
+     * @return true if this expression can be evaluated against a JSON text.
+     */
+    public boolean isTextQuery() {
+        return this.pointer != null;
+    }
+
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+
+    private static JSONPath parse(String expression) {
+        if (expression.isEmpty() || expression.charAt(0) == '/') {
+            JSONPointer pointer = new JSONPointer(expression);
+            List<Step> steps = new ArrayList<Step>();
+            for (String token : pointer.tokens()) {
+                steps.add(new Member(token));
+            }
+            return new JSONPath(expression, steps.toArray(new Step[0]), pointer);
+        }
+        if (expression.charAt(0) != '$') {
+            throw new IllegalArgumentException("a JSONPath should start with '$'");
+        }
+
+        List<Step> steps = new ArrayList<Step>();
+        boolean members = true;
+        int i = 1;
+        int length = expression.length();
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (c == '.') {
+                i++;
+                if (i < length && expression.charAt(i) == '.') {
+                    steps.add(Descendants.INSTANCE);
+                    members = false;
+                    i++;
+                    if (i < length && expression.charAt(i) == '[') {
+                        continue;
+                    }
+                }
+                if (i < length && expression.charAt(i) == '*') {
+                    steps.add(Wildcard.INSTANCE);
+                    members = false;
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < length && ".[]".indexOf(expression.charAt(i)) < 0) {
+                    i++;
+                }
+                if (start == i) {
+                    throw syntaxError(expression, "Expected a member name", start);
+                }
+                steps.add(new Member(expression.substring(start, i)));
+            } else if (c == '[') {
+                int[] position = {i + 1};
+                Step step = bracket(expression, position);
+                steps.add(step);
+                members &= step instanceof Member;
+                i = position[0];
+            } else {
+                throw syntaxError(expression, "Expected a '.' or '['", i);
+            }
+        }
+
+        JSONPointer pointer = null;
+        if (members) {
+            StringBuilder sb = new StringBuilder();
+            for (Step step : steps) {
+                sb.append('/').append(((Member) step).name.replace("~", "~0").replace("/", "~1"));
+            }
+            pointer = new JSONPointer(sb.toString());
+        }
+        return new JSONPath(expression, steps.toArray(new Step[0]), pointer);
+    }
+
+    /**
+     * Parse a bracket.
+     *
+     * @param expression the expression.
+     * @param position the position right after the <code>[</code>, updated to
+     *                 the position right after the <code>]</code>.
+     * @return the step.
+     */
+    private static Step bracket(String expression, int[] position) {
+        int length = expression.length();
+        int i = position[0];
+        i = skipWhitespaces(expression, i);
+        if (i >= length) {
+            throw syntaxError(expression, "Unterminated bracket", i);
+        }
+
+        char c = expression.charAt(i);
+        Step step;
+        if (c == '*') {
+            step = Wildcard.INSTANCE;
+            i++;
+        } else if (c == '\'' || c == '"') {
+            List<String> names = new ArrayList<String>();
+            for (;;) {
+                int end = quoteEnd(expression, i);
+                names.add(unquote(expression.substring(i + 1, end - 1)));
+                i = skipWhitespaces(expression, end);
+                if (i >= length || expression.charAt(i) != ',') {
+                    break;
+                }
+                i = skipWhitespaces(expression, i + 1);
+                if (i >= length || (expression.charAt(i) != '\'' && expression.charAt(i) != '"')) {
+                    throw syntaxError(expression, "Expected a quoted member name", i);
+                }
+            }
+            step = (names.size() == 1) ? new Member(names.get(0)) : new Members(names);
+        } else {
+            int close = expression.indexOf(']', i);
+            if (close < 0) {
+                throw syntaxError(expression, "Unterminated bracket", i);
+            }
+            String content = expression.substring(i, close);
+            if (content.indexOf(':') >= 0) {
+                String[] bounds = content.split(":", -1);
+                if (bounds.length > 3) {
+                    throw syntaxError(expression, "Invalid slice", i);
+                }
+                Integer step3 = (bounds.length == 3) ? integer(expression, bounds[2], true, i) : null;
+                if (step3 != null && step3 == 0) {
+                    throw syntaxError(expression, "A slice step cannot be 0", i);
+                }
+                step = new Slice(integer(expression, bounds[0], true, i), integer(expression, bounds[1], true, i),
+                        (step3 == null) ? 1 : step3);
+            } else {
+                String[] items = content.split(",", -1);
+                int[] indexes = new int[items.length];
+                for (int j = 0; j < items.length; j++) {
+                    indexes[j] = integer(expression, items[j], false, i);
+                }
+                step = (indexes.length == 1) ? new Index(indexes[0]) : new Indexes(indexes);
+            }
+            i = close;
+        }
+
+        i = skipWhitespaces(expression, i);
+        if (i >= length || expression.charAt(i) != ']') {
+            throw syntaxError(expression, "Expected a ']'", i);
+        }
+        position[0] = i + 1;
+        return step;
+    }
+
+    private static int quoteEnd(String expression, int i) {
+        char quote = expression.charAt(i++);
+        while (i < expression.length()) {
+            char c = expression.charAt(i++);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i;
+            }
+        }
+        throw syntaxError(expression, "Unterminated string", i);
+    }
+
+    private static String unquote(String name) {
+        if (name.indexOf('\\') < 0) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '\\' && i + 1 < name.length()) {
+                c = name.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static Integer integer(String expression, String text, boolean optional, int position) {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty() && optional) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(trimmed);
+        } catch (NumberFormatException nfe) {
+            throw syntaxError(expression, "Expected an integer", position);
+        }
+    }
+
+    private static int skipWhitespaces(String expression, int i) {
+        while (i < expression.length() && expression.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static IllegalArgumentException syntaxError(String expression, String message, int index) {
+        return new IllegalArgumentException(message + " at " + index + " in JSONPath " + expression);
+    }
+
+    /**
+     * @return the index of an array designated by a member name, as a JSON
+     * Pointer does, or -1 if the name is not an index.
+     */
+    private static int index(String name) {
+        if (name.isEmpty() || name.length() > 9 || (name.length() > 1 && name.charAt(0) == '0')) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    /**
+     * A step of an expression, selecting values out of a value.
+     */
+    private abstract static class Step {
+
+        /**
+         * Add the selected values to the given list.
+         */
+        abstract void collect(Object node, List<Object> out);
+    }
+
+    /**
+     * A step selecting at most one value.
+     */
+    private abstract static class DefiniteStep extends Step {
+
+        /**
+         * Select the single value of this step.
+         *
+         * @return the selected value, or null.
+         */
+        abstract Object select(Object node);
+
+        @Override
+        final void collect(Object node, List<Object> out) {
+            Object value = this.select(node);
+            if (value != null) {
+                out.add(value);
+            }
+        }
+    }
+
+    /**
+     * A member of an object, or an element of an array when the name is an
+     * index, as with a JSON Pointer.
+     */
+    private static final class Member extends DefiniteStep {
+
+        final String name;
+        final int index;
+
+        Member(String name) {
+            this.name = name;
+            this.index = index(name);
+        }
+
+        @Override
+        Object select(Object node) {
+            if (node instanceof JSONObject) {
+                return ((JSONObject) node).opt(this.name);
+            }
+            if (node instanceof JSONArray && this.index >= 0) {
+                return ((JSONArray) node).opt(this.index);
+            }
+            return null;
+        }
+    }
+
+    private static final class Members extends Step {
+
+        final String[] names;
+
+        Members(List<String> names) {
+            this.names = names.toArray(new String[0]);
+        }
+
+        @Override
+        void collect(Object node, List<Object> out) {
+            if (node instanceof JSONObject) {
+                JSONObject object = (JSONObject) node;
+                for (String name : this.names) {
+                    Object value = object.opt(name);
+                    if (value != null) {
+                        out.add(value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * An element of an array, counted from the end when negative.
+     */
+    private static final class Index extends DefiniteStep {
+
+        final int index;
+
+        Index(int index) {
+            this.index = index;
+        }
+
+        @Override
+        Object select(Object node) {
+            if (!(node instanceof JSONArray)) {
+                return null;
+            }
+            JSONArray array = (JSONArray) node;
+            return array.opt((this.index < 0) ? array.length() + this.index : this.index);
+        }
+    }
+
+    private static final class Indexes extends Step {
+
+        final int[] indexes;
+
+        Indexes(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        @Override
+        void collect(Object node, List<Object> out) {
+            if (node instanceof JSONArray) {
+                JSONArray array = (JSONArray) node;
+                for (int index : this.indexes) {
+                    Object value = array.opt((index < 0) ? array.length() + index : index);
+                    if (value != null) {
+                        out.add(value);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Slice extends Step {
+
+        final Integer start;
+        final Integer end;
+        final int step;
+
+        Slice(Integer start, Integer end, int step) {
+            this.start = start;
+            this.end = end;
+            this.step = step;
+        }
+
+        @Override
+        void collect(Object node, List<Object> out) {
+            if (!(node instanceof JSONArray)) {
+                return;
+            }
+            JSONArray array = (JSONArray) node;
+            int length = array.length();
+            if (this.step > 0) {
+                int from = bound(this.start, 0, length, 0, length);
+                int to = bound(this.end, length, length, 0, length);
+                for (int i = from; i < to; i += this.step) {
+                    out.add(array.opt(i));
+                }
+            } else {
+                int from = bound(this.start, length - 1, length, -1, length - 1);
+                int to = bound(this.end, -1, length, -1, length - 1);
+                for (int i = from; i > to; i += this.step) {
+                    out.add(array.opt(i));
+                }
+            }
+        }
+
+        private static int bound(Integer value, int otherwise, int length, int min, int max) {
+            if (value == null) {
+                return otherwise;
+            }
+            int bound = (value < 0) ? value + length : value;
+            return Math.max(min, Math.min(max, bound));
+        }
+    }
+
+    /**
+     * All the members of an object, or all the elements of an array.
+     */
+    private static final class Wildcard extends Step {
+
+        static final Wildcard INSTANCE = new Wildcard();
+
+        @Override
+        void collect(Object node, List<Object> out) {
+            if (node instanceof JSONObject) {
+                JSONObject object = (JSONObject) node;
+                Iterator<String> keys = object.keys();
+                while (keys.hasNext()) {
+                    out.add(object.opt(keys.next()));
+                }
+            } else if (node instanceof JSONArray) {
+                JSONArray array = (JSONArray) node;
+                for (int i = 0; i < array.length(); i++) {
+                    out.add(array.opt(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * A value and all the objects and arrays nested in it, in document order.
+     * Nested values are tracked on an explicit stack, so a document of any
+     * depth is walked in constant stack space.
+     */
+    private static final class Descendants extends Step {
+
+        static final Descendants INSTANCE = new Descendants();
+
+        @Override
+        void collect(Object node, List<Object> out) {
+            ArrayDeque<Object> stack = new ArrayDeque<Object>();
+            stack.push(node);
+            List<Object> children = new ArrayList<Object>();
+            while (!stack.isEmpty()) {
+                Object current = stack.pop();
+                out.add(current);
+                children.clear();
+                Wildcard.INSTANCE.collect(current, children);
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    Object child = children.get(i);
+                    if (child instanceof JSONObject || child instanceof JSONArray) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+    }
+}
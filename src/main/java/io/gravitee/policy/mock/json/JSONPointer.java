@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A JSON Pointer (RFC 6901), such as <code>/user/addresses/0/city</code>.
+ * <p>
+ * A pointer can be evaluated against a parsed document, or directly against a
+ * JSON text. In the latter case, the text is only scanned up to the pointed
+ * value, which is the only one to be parsed: the members and elements before
+ * it are skipped without being built, and the rest of the text is not read.
+ * A UTF-8 encoded text is scanned as bytes, only the keys along the path and
+ * the pointed value being decoded.
+ *
+ * @author GraviteeSource Team
+ */
+public class JSONPointer {
+
+    private final List<String> refTokens;
+
+    /**
+     * Parse a JSON Pointer.
+     *
+     * @param pointer the pointer, either empty (the whole document) or
+     *                starting with <code>/</code>.
+     * @throws IllegalArgumentException if the pointer is not valid.
+     */
+    public JSONPointer(String pointer) {
+        if (pointer == null) {
+            throw new IllegalArgumentException("pointer cannot be null");
+        }
+        if (pointer.isEmpty()) {
+            this.refTokens = Collections.emptyList();
+            return;
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("a JSON pointer should start with '/'");
+        }
+
+        List<String> tokens = new ArrayList<String>();
+        int start = 1;
+        for (;;) {
+            int end = pointer.indexOf('/', start);
+            String token = (end < 0) ? pointer.substring(start) : pointer.substring(start, end);
+            tokens.add(unescape(token));
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        this.refTokens = tokens;
+    }
+
+    /**
+     * Evaluate this pointer against a parsed document.
+     *
+     * @param document a JSONObject, a JSONArray or any other value.
+     * @return the pointed value, or null if there is no such value.
+     */
+    public Object queryFrom(Object document) {
+        Object current = document;
+        for (String token : this.refTokens) {
+            if (current instanceof JSONObject) {
+                current = ((JSONObject) current).opt(token);
+            } else if (current instanceof JSONArray) {
+                int index = index(token);
+                current = (index < 0) ? null : ((JSONArray) current).opt(index);
+            } else {
+                return null;
+            }
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Evaluate this pointer against a JSON text, parsing the pointed value
+     * only.
+     * <p>
+     * Only strict JSON is supported along the path to the value: a text
+     * relying on the lenient syntax accepted by {@link JSONObject} (unquoted
+     * keys, <code>=</code> or <code>;</code> separators, elisions) raises a
+     * JSONException, and should be parsed as a whole instead.
+     *
+     * @param source a JSON text.
+     * @return the pointed value, or null if there is no such value.
+     * @throws JSONException if the text can not be scanned up to the value.
+     */
+    public Object queryFrom(String source) throws JSONException {
+        return find(source, 0);
+    }
+
+    /**
+     * Evaluate this pointer against a UTF-8 encoded JSON text, parsing the
+     * pointed value only, as {@link #queryFrom(String)} does.
+     *
+     * @param source a UTF-8 encoded JSON text.
+     * @return the pointed value, or null if there is no such value.
+     * @throws JSONException if the text can not be scanned up to the value.
+     */
+    public Object queryFrom(byte[] source) throws JSONException {
+        boolean bom = source.length >= 3
+                && source[0] == (byte) 0xEF && source[1] == (byte) 0xBB && source[2] == (byte) 0xBF;
+        return find(new ByteText(source), bom ? 3 : 0);
+    }
+
+    private Object find(CharSequence source, int start) throws JSONException {
+        int i = skipWhitespaces(source, start);
+        for (String token : this.refTokens) {
+            if (i >= source.length()) {
+                throw syntaxError("Unexpected end of text", i);
+            }
+            char c = source.charAt(i);
+            if (c == '{') {
+                i = findMember(source, i + 1, token);
+            } else if (c == '[') {
+                int index = index(token);
+                i = (index < 0) ? -1 : findElement(source, i + 1, index);
+            } else {
+                return null;
+            }
+            if (i < 0) {
+                return null;
+            }
+        }
+
+        int end = skipValue(source, i);
+        if (source instanceof ByteText) {
+            return new JSONByteParser(((ByteText) source).bytes, i, end - i).nextValue();
+        }
+        return new JSONTokener((String) source, i, end).nextValue();
+    }
+
+    /**
+     * @return the reference tokens of this pointer, unescaped.
+     */
+    List<String> tokens() {
+        return this.refTokens;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (String token : this.refTokens) {
+            sb.append('/').append(token.replace("~", "~0").replace("/", "~1"));
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String token) {
+        return token.replace("~1", "/").replace("~0", "~");
+    }
+
+    private static int index(String token) {
+        if (token.isEmpty() || token.length() > 9 || (token.length() > 1 && token.charAt(0) == '0')) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    /**
+     * @return the position of the value of the given member, or -1 if the
+     * object has no such member.
+     */
+    private static int findMember(CharSequence source, int i, String name) throws JSONException {
+        i = skipWhitespaces(source, i);
+        if (i < source.length() && source.charAt(i) == '}') {
+            return -1;
+        }
+        for (;;) {
+            if (i >= source.length() || (source.charAt(i) != '"' && source.charAt(i) != '\'')) {
+                throw syntaxError("Expected a quoted key", i);
+            }
+            int end = skipString(source, i);
+            boolean matches = key(source, i, end).equals(name);
+
+            i = skipWhitespaces(source, end);
+            if (i >= source.length() || source.charAt(i) != ':') {
+                throw syntaxError("Expected a ':' after a key", i);
+            }
+            i = skipWhitespaces(source, i + 1);
+            if (matches) {
+                return i;
+            }
+
+            i = skipWhitespaces(source, skipValue(source, i));
+            if (i >= source.length()) {
+                throw syntaxError("Expected a ',' or '}'", i);
+            }
+            char c = source.charAt(i);
+            if (c == '}') {
+                return -1;
+            }
+            if (c != ',') {
+                throw syntaxError("Expected a ',' or '}'", i);
+            }
+            i = skipWhitespaces(source, i + 1);
+        }
+    }
+
+    /**
+     * @return the position of the element at the given index, or -1 if the
+     * array is shorter.
+     */
+    private static int findElement(CharSequence source, int i, int index) throws JSONException {
+        i = skipWhitespaces(source, i);
+        if (i < source.length() && source.charAt(i) == ']') {
+            return -1;
+        }
+        for (int current = 0; ; current++) {
+            if (i >= source.length() || source.charAt(i) == ',' || source.charAt(i) == ']') {
+                throw syntaxError("Missing value", i);
+            }
+            if (current == index) {
+                return i;
+            }
+
+            i = skipWhitespaces(source, skipValue(source, i));
+            if (i >= source.length()) {
+                throw syntaxError("Expected a ',' or ']'", i);
+            }
+            char c = source.charAt(i);
+            if (c == ']') {
+                return -1;
+            }
+            if (c != ',') {
+                throw syntaxError("Expected a ',' or ']'", i);
+            }
+            i = skipWhitespaces(source, i + 1);
+        }
+    }
+
+    /**
+     * @return the position right after the value starting at the given
+     * position.
+     */
+    private static int skipValue(CharSequence source, int i) throws JSONException {
+        char c = source.charAt(i);
+        if (c == '"' || c == '\'') {
+            return skipString(source, i);
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            while (i < source.length()) {
+                c = source.charAt(i);
+                if (c == '"' || c == '\'') {
+                    i = skipString(source, i);
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+                i++;
+            }
+            throw syntaxError("Unterminated value", i);
+        }
+
+        int start = i;
+        while (i < source.length() && source.charAt(i) >= ' '
+                && ",:]}/\\\"[{;=#".indexOf(source.charAt(i)) < 0) {
+            i++;
+        }
+        if (i == start) {
+            throw syntaxError("Missing value", i);
+        }
+        return i;
+    }
+
+    /**
+     * @return the position right after the string starting at the given
+     * position.
+     */
+    private static int skipString(CharSequence source, int i) throws JSONException {
+        char quote = source.charAt(i++);
+        while (i < source.length()) {
+            char c = source.charAt(i++);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i;
+            } else if (c == '\n' || c == '\r') {
+                break;
+            }
+        }
+        throw syntaxError("Unterminated string", i);
+    }
+
+    private static String key(CharSequence source, int start, int end) throws JSONException {
+        String raw = (source instanceof ByteText)
+                ? ((ByteText) source).decode(start + 1, end - 1)
+                : source.subSequence(start + 1, end - 1).toString();
+        if (raw.indexOf('\\') < 0) {
+            return raw;
+        }
+        return new JSONTokener(raw + source.charAt(start)).nextString(source.charAt(start));
+    }
+
+    private static int skipWhitespaces(CharSequence source, int i) {
+        while (i < source.length() && source.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static JSONException syntaxError(String message, int index) {
+        return new JSONException(message + " at " + index);
+    }
+
+    /**
+     * A UTF-8 encoded text, seen one byte per char. The structural characters
+     * of JSON are ASCII, and no byte of a multi-byte UTF-8 sequence is, so the
+     * text can be scanned as is: only keys and values have to be decoded.
+     */
+    private static final class ByteText implements CharSequence {
+
+        private final byte[] bytes;
+
+        ByteText(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return this.bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (this.bytes[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return decode(start, end);
+        }
+
+        String decode(int start, int end) {
+            return new String(this.bytes, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return decode(0, this.bytes.length);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.util.Arrays;
+
+/**
+ * A JSONPullParser reads a JSON text as a sequence of events, without
+ * building the document: the memory it uses only depends on the nesting
+ * depth of the text, and the caller may stop reading at any point.
+ * <p>
+ * The accepted syntax is the one of {@link JSONObject#JSONObject(JSONTokener)}
+ * and {@link JSONArray#JSONArray(JSONTokener)}.
+ * <pre>
+ * JSONPullParser parser = new JSONPullParser(new JSONTokener(source));
+ * while (parser.hasNext()) {
+ *     if (parser.next() == JSONPullParser.Event.KEY &amp;&amp; "id".equals(parser.getKey())) {
+ *         parser.next();
+ *         return parser.getValue();
+ *     }
+ * }
+ * </pre>
+ *
+ * @author GraviteeSource Team
+ */
+public class JSONPullParser {
+
+    /**
+     * The events of a JSON text.
+     */
+    public enum Event {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        /**
+         * A member name, available through {@link #getKey()}.
+         */
+        KEY,
+        /**
+         * A String, a Number, a Boolean or JSONObject.NULL, available through
+         * {@link #getValue()}.
+         */
+        VALUE
+    }
+
+    private static final byte FIRST = 0;
+    private static final byte AFTER_KEY = 1;
+    private static final byte AFTER_VALUE = 2;
+
+    private final JSONTokener x;
+
+    /*
+     * The objects and arrays being read, and where the parser stands in each
+     * of them.
+     */
+    private boolean[] objects = new boolean[16];
+    private byte[] states = new byte[16];
+    private int depth;
+
+    private boolean started;
+    private Event event;
+    private String key;
+    private Object value;
+
+    /**
+     * Construct a JSONPullParser reading a single JSON value.
+     *
+     * @param x A JSONTokener of the source text.
+     */
+    public JSONPullParser(JSONTokener x) {
+        this.x = x;
+    }
+
+    /**
+     * @return true if the value has not been completely read yet.
+     */
+    public boolean hasNext() {
+        return !this.started || this.depth > 0;
+    }
+
+    /**
+     * Read the next event.
+     *
+     * @return The event.
+     * @throws JSONException If there is a syntax error, or if the value has
+     *                       already been completely read.
+     */
+    public Event next() throws JSONException {
+        if (!this.hasNext()) {
+            throw new JSONException("No more events");
+        }
+        this.value = null;
+        if (this.depth == 0) {
+            this.started = true;
+            return this.event = this.nextValue();
+        }
+
+        int top = this.depth - 1;
+        char c;
+        if (this.objects[top]) {
+            switch (this.states[top]) {
+            case FIRST:
+                return this.nextMember();
+            case AFTER_KEY:
+                if (this.x.nextClean() != ':') {
+                    throw this.x.syntaxError("Expected a ':' after a key");
+                }
+                this.states[top] = AFTER_VALUE;
+                return this.event = this.nextValue();
+            default:
+                c = this.x.nextClean();
+                if (c == ',' || c == ';') {
+                    if (this.x.nextClean() == '}') {
+                        return this.end(Event.END_OBJECT);
+                    }
+                    this.x.back();
+                    return this.nextMember();
+                }
+                if (c == '}') {
+                    return this.end(Event.END_OBJECT);
+                }
+                throw this.x.syntaxError("Expected a ',' or '}'");
+            }
+        }
+
+        if (this.states[top] == FIRST) {
+            if (this.x.nextClean() == ']') {
+                return this.end(Event.END_ARRAY);
+            }
+            this.x.back();
+            return this.event = this.nextElement();
+        }
+        c = this.x.nextClean();
+        if (c == ',') {
+            if (this.x.nextClean() == ']') {
+                return this.end(Event.END_ARRAY);
+            }
+            this.x.back();
+            return this.event = this.nextElement();
+        }
+        if (c == ']') {
+            return this.end(Event.END_ARRAY);
+        }
+        throw this.x.syntaxError("Expected a ',' or ']'");
+    }
+
+    /**
+     * @return The last event read, or null if none has been read yet.
+     */
+    public Event getEvent() {
+        return this.event;
+    }
+
+    /**
+     * @return The member name read by the last KEY event.
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * @return The value read by the last VALUE event, or null if the last
+     *         event was not a VALUE.
+     */
+    public Object getValue() {
+        return this.value;
+    }
+
+    /**
+     * @return The number of objects and arrays being read.
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Read the whole object or array just started, as a JSONObject or a
+     * JSONArray, the next event being the one following its end. After a
+     * VALUE event, return the value.
+     *
+     * @return The value.
+     * @throws JSONException If there is a syntax error, or if the last event
+     *                       did not start a value.
+     */
+    public Object readValue() throws JSONException {
+        if (this.event == Event.VALUE) {
+            return this.value;
+        }
+        if (this.event != Event.START_OBJECT && this.event != Event.START_ARRAY) {
+            throw new JSONException("No value to read after " + this.event);
+        }
+        // The opening character is the last one read
+        this.x.back();
+        Object read = (this.event == Event.START_OBJECT) ? new JSONObject(this.x) : new JSONArray(this.x);
+        this.depth -= 1;
+        this.event = (this.event == Event.START_OBJECT) ? Event.END_OBJECT : Event.END_ARRAY;
+        return read;
+    }
+
+    /**
+     * Skip the object or array just started, the next event being the one
+     * following its end. Nothing is built. After another event, do nothing.
+     *
+     * @throws JSONException If there is a syntax error.
+     */
+    public void skipChildren() throws JSONException {
+        if (this.event != Event.START_OBJECT && this.event != Event.START_ARRAY) {
+            return;
+        }
+        int target = this.depth - 1;
+        while (this.depth > target) {
+            this.next();
+        }
+    }
+
+    /*
+     * The start of an object or the separator of its members has been read:
+     * read the next key or the end of the object.
+     */
+    private Event nextMember() throws JSONException {
+        char c = this.x.nextClean();
+        if (c == 0) {
+            throw this.x.syntaxError("A JSONObject text must end with '}'");
+        }
+        if (c == '}') {
+            return this.end(Event.END_OBJECT);
+        }
+        this.x.back();
+        return this.event = this.nextKey();
+    }
+
+    private Event nextKey() throws JSONException {
+        this.key = this.x.nextValue().toString();
+        this.states[this.depth - 1] = AFTER_KEY;
+        return Event.KEY;
+    }
+
+    private Event nextElement() throws JSONException {
+        this.states[this.depth - 1] = AFTER_VALUE;
+        if (this.x.nextClean() == ',') {
+            // An elision, read as a null element
+            this.x.back();
+            this.value = JSONObject.NULL;
+            return Event.VALUE;
+        }
+        this.x.back();
+        return this.nextValue();
+    }
+
+    private Event nextValue() throws JSONException {
+        char c = this.x.nextClean();
+        if (c == '{' || c == '[') {
+            this.push(c == '{');
+            return (c == '{') ? Event.START_OBJECT : Event.START_ARRAY;
+        }
+        this.x.back();
+        this.value = this.x.nextValue();
+        return Event.VALUE;
+    }
+
+    private void push(boolean object) {
+        if (this.depth == this.objects.length) {
+            this.objects = Arrays.copyOf(this.objects, this.depth * 2);
+            this.states = Arrays.copyOf(this.states, this.depth * 2);
+        }
+        this.objects[this.depth] = object;
+        this.states[this.depth] = FIRST;
+        this.depth += 1;
+    }
+
+    private Event end(Event end) {
+        this.depth -= 1;
+        return this.event = end;
+    }
+}
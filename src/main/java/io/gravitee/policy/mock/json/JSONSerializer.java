@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write JSON values as text, with the output of <code>JSONObject.write</code>
+ * and <code>JSONArray.write</code>, compact or indented.
+ * <p>
+ * Nested objects and arrays are tracked on an explicit stack rather than
+ * through recursive calls, so a document of any depth is written in constant
+ * stack space.
+ *
+ * @author GraviteeSource Team
+ */
+final class JSONSerializer {
+
+    /**
+     * From this depth on, the objects and arrays being written are checked for
+     * cycles, which would otherwise be written for ever.
+     */
+    private static final int CYCLE_CHECK_DEPTH = 1024;
+
+    /**
+     * An object or an array being written.
+     */
+    private static final class Frame {
+
+        final JSONObject object;
+        final JSONArray array;
+        final Iterator<String> keys;
+        final int length;
+        final int indent;
+        final int childIndent;
+        int index;
+
+        Frame(JSONObject object, JSONArray array, int indent, int indentFactor) {
+            this.object = object;
+            this.array = array;
+            this.keys = (object != null) ? object.keys() : null;
+            this.length = (object != null) ? object.length() : array.length();
+            this.indent = indent;
+            // A single member is written on the line of its container
+            this.childIndent = (this.length == 1) ? indent : indent + indentFactor;
+        }
+
+        Object container() {
+            return (this.object != null) ? this.object : this.array;
+        }
+    }
+
+    private final Writer writer;
+    private final int indentFactor;
+    private final List<Frame> stack = new ArrayList<Frame>();
+    private IdentityHashMap<Object, Boolean> open;
+
+    private JSONSerializer(Writer writer, int indentFactor) {
+        this.writer = writer;
+        this.indentFactor = indentFactor;
+    }
+
+    /**
+     * Write a value.
+     *
+     * @param writer       Writes the serialized JSON
+     * @param value        The value
+     * @param indentFactor The number of spaces to add to each level of indentation.
+     * @param indent       The indentation of the top level.
+     * @return The writer.
+     */
+    static Writer write(Writer writer, Object value, int indentFactor, int indent)
+            throws JSONException, IOException {
+        new JSONSerializer(writer, indentFactor).write(value, indent);
+        return writer;
+    }
+
+    private void write(Object value, int indent) throws JSONException, IOException {
+        this.writeValue(value, indent);
+
+        while (!this.stack.isEmpty()) {
+            Frame frame = this.stack.get(this.stack.size() - 1);
+            if (frame.index < frame.length) {
+                if (frame.length != 1) {
+                    if (frame.index > 0) {
+                        this.writer.write(',');
+                    }
+                    if (this.indentFactor > 0) {
+                        this.writer.write('\n');
+                    }
+                    JSONObject.indent(this.writer, frame.childIndent);
+                }
+
+                Object child;
+                if (frame.object != null) {
+                    String key = frame.keys.next();
+                    JSONObject.quote(key, this.writer);
+                    this.writer.write(':');
+                    if (this.indentFactor > 0) {
+                        this.writer.write(' ');
+                    }
+                    child = frame.object.opt(key);
+                } else {
+                    ElementList elements = frame.array.elements();
+                    ElementList.Kind kind = elements.kind();
+                    if (kind == ElementList.Kind.INT || kind == ElementList.Kind.LONG) {
+                        // Integers written as they are stored, without being boxed
+                        this.writer.write(Long.toString(elements.longAt(frame.index++)));
+                        continue;
+                    }
+                    child = frame.array.opt(frame.index);
+                }
+                frame.index++;
+                this.writeValue(child, frame.childIndent);
+            } else {
+                if (frame.length > 1) {
+                    if (this.indentFactor > 0) {
+                        this.writer.write('\n');
+                    }
+                    JSONObject.indent(this.writer, frame.indent);
+                }
+                this.writer.write(frame.object != null ? '}' : ']');
+                this.pop();
+            }
+        }
+    }
+
+    /**
+     * Write a scalar value, or open an object or an array.
+     */
+    private void writeValue(Object value, int indent) throws JSONException, IOException {
+        if (value == null) {
+            this.writer.write("null");
+            return;
+        }
+
+        ValueKind kind = ValueKind.of(value.getClass());
+        if (kind.nullCheck && value.equals(null)) {
+            this.writer.write("null");
+            return;
+        }
+        switch (kind.write) {
+        case NULL:
+            this.writer.write("null");
+            break;
+        case JSON_OBJECT:
+            this.push(new Frame((JSONObject) value, null, indent, this.indentFactor));
+            break;
+        case JSON_ARRAY:
+            this.push(new Frame(null, (JSONArray) value, indent, this.indentFactor));
+            break;
+        case MAP:
+            Map<?, ?> map = (Map<?, ?>) value;
+            this.push(new Frame(new JSONObject(map), null, indent, this.indentFactor));
+            break;
+        case COLLECTION:
+            Collection<?> coll = (Collection<?>) value;
+            this.push(new Frame(null, new JSONArray(coll), indent, this.indentFactor));
+            break;
+        case ARRAY:
+            this.push(new Frame(null, new JSONArray(value), indent, this.indentFactor));
+            break;
+        case NUMBER:
+            this.writer.write(JSONObject.numberToString((Number) value));
+            break;
+        case BOOLEAN:
+            this.writer.write(value.toString());
+            break;
+        case JSON_STRING:
+            Object o;
+            try {
+                o = ((JSONString) value).toJSONString();
+            } catch (Exception e) {
+                throw new JSONException(e);
+            }
+            this.writer.write(o != null ? o.toString() : JSONObject.quote(value.toString()));
+            break;
+        default:
+            JSONObject.quote(value.toString(), this.writer);
+        }
+    }
+
+    private void push(Frame frame) throws JSONException, IOException {
+        if (this.stack.size() == CYCLE_CHECK_DEPTH) {
+            this.open = new IdentityHashMap<Object, Boolean>();
+            for (Frame opened : this.stack) {
+                this.open.put(opened.container(), Boolean.TRUE);
+            }
+        }
+        if (this.open != null && this.open.put(frame.container(), Boolean.TRUE) != null) {
+            throw new JSONException("Cycle detected while writing a JSON text");
+        }
+
+        this.stack.add(frame);
+        this.writer.write(frame.object != null ? '{' : '[');
+    }
+
+    private void pop() {
+        Frame frame = this.stack.remove(this.stack.size() - 1);
+        if (this.open != null) {
+            this.open.remove(frame.container());
+        }
+    }
+}
@@ -20,7 +20,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -50,6 +49,16 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * A tokener built on a String or a char array reads it directly by index,
+ * rather than through a Reader. Line and character positions are then only
+ * worked out when a syntax error is reported.
+ * <p>
+ * Whatever the source, the position of a syntax error is the one of the next
+ * character to read: a character given back by {@link #back()} is not counted,
+ * and a <code>\r\n</code>, <code>\r</code> or <code>\n</code> line break
+ * counts as one line. Before, a line break given back and read again was
+ * counted twice, so errors following it were reported on a later line.
  * @author JSON.org
  * @version 2014-05-03
  */
@@ -63,6 +72,26 @@ public class JSONTokener {
     private Reader  reader;
     private boolean usePrevious;
 
+    /*
+     * The line and character before and after the last character read from
+     * the Reader, restored when it is given back and read again.
+     */
+    private long    lastLine;
+    private long    lastCharacter;
+    private long    replayLine;
+    private long    replayCharacter;
+
+    /*
+     * In-memory source, read directly when reader is null: either a String
+     * or a char array, between start (inclusive) and end (exclusive). The
+     * position is the index of the next character, relative to the source.
+     */
+    private final String string;
+    private final char[] chars;
+    private final int    start;
+    private final int    end;
+    private int          position;
+
 
     /**
      * Construct a JSONTokener from a Reader.
@@ -73,6 +102,10 @@ public class JSONTokener {
         this.reader = reader.markSupported()
             ? reader
             : new BufferedReader(reader);
+        this.string = null;
+        this.chars = null;
+        this.start = 0;
+        this.end = 0;
         this.eof = false;
         this.usePrevious = false;
         this.previous = 0;
@@ -97,7 +130,59 @@ public class JSONTokener {
      * @param s     A source string.
      */
     public JSONTokener(String s) {
-        this(new StringReader(s));
+        this(s, 0, s.length());
+    }
+
+
+    /**
+     * Construct a JSONTokener from a part of a string.
+     *
+     * @param s     A source string.
+     * @param start The index of the first character to read.
+     * @param end   The index after the last character to read.
+     */
+    public JSONTokener(String s, int start, int end) {
+        this(s, null, start, end);
+        if (start < 0 || end > s.length() || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + s.length());
+        }
+    }
+
+
+    /**
+     * Construct a JSONTokener from a char array.
+     *
+     * @param chars A source char array. It is not copied, and should not be
+     *              modified while being read.
+     */
+    public JSONTokener(char[] chars) {
+        this(null, chars, 0, chars.length);
+    }
+
+
+    private JSONTokener(String string, char[] chars, int start, int end) {
+        this.reader = null;
+        this.string = string;
+        this.chars = chars;
+        this.start = start;
+        this.end = end;
+        this.position = start;
+        this.eof = false;
+        this.usePrevious = false;
+        this.previous = 0;
+        this.index = 0;
+        this.character = 1;
+        this.line = 1;
+    }
+
+
+    private char charAt(int i) {
+        return (this.string != null) ? this.string.charAt(i) : this.chars[i];
+    }
+
+
+    private String substring(int from, int to) {
+        return (this.string != null) ? this.string.substring(from, to) : new String(this.chars, from, to - from);
     }
 
 
@@ -107,11 +192,23 @@ public class JSONTokener {
      * the next number or identifier.
      */
     public void back() throws JSONException {
+        if (this.reader == null) {
+            if (this.usePrevious || this.position <= this.start) {
+                throw new JSONException("Stepping back two steps is not supported");
+            }
+            this.position -= 1;
+            this.usePrevious = true;
+            this.eof = false;
+            return;
+        }
         if (this.usePrevious || this.index <= 0) {
             throw new JSONException("Stepping back two steps is not supported");
         }
         this.index -= 1;
-        this.character -= 1;
+        this.replayLine = this.line;
+        this.replayCharacter = this.character;
+        this.line = this.lastLine;
+        this.character = this.lastCharacter;
         this.usePrevious = true;
         this.eof = false;
     }
@@ -162,10 +259,29 @@ public class JSONTokener {
      * @return The next character, or 0 if past the end of the source string.
      */
     public char next() throws JSONException {
+        if (this.reader == null) {
+            char c;
+            if (this.usePrevious) {
+                this.usePrevious = false;
+                c = this.previous;
+            } else {
+                c = (this.position < this.end) ? this.charAt(this.position) : 0;
+                if (c == 0) { // End of source
+                    this.eof = true;
+                }
+            }
+            this.position += 1;
+            this.previous = c;
+            return c;
+        }
+
         int c;
         if (this.usePrevious) {
             this.usePrevious = false;
-            c = this.previous;
+            this.index += 1;
+            this.line = this.replayLine;
+            this.character = this.replayCharacter;
+            return this.previous;
         } else {
             try {
                 c = this.reader.read();
@@ -179,6 +295,8 @@ public class JSONTokener {
             }
         }
         this.index += 1;
+        this.lastLine = this.line;
+        this.lastCharacter = this.character;
         if (this.previous == '\r') {
             this.line += 1;
             this.character = c == '\n' ? 0 : 1;
@@ -244,6 +362,22 @@ public class JSONTokener {
      * @return  A character, or 0 if there are no more characters.
      */
     public char nextClean() throws JSONException {
+        if (this.reader == null && !this.usePrevious) {
+            int i = this.position;
+            while (i < this.end) {
+                char c = this.charAt(i);
+                if (c == 0) {
+                    break;
+                }
+                i++;
+                if (c > ' ') {
+                    this.position = i;
+                    this.previous = c;
+                    return c;
+                }
+            }
+            this.position = i;
+        }
         for (;;) {
             char c = this.next();
             if (c == 0 || c > ' ') {
@@ -265,6 +399,22 @@ public class JSONTokener {
      * @throws JSONException Unterminated string.
      */
     public String nextString(char quote) throws JSONException {
+        if (this.reader == null && !this.usePrevious) {
+            // Most strings have no escape sequence, and are taken as is
+            for (int i = this.position; i < this.end; i++) {
+                char c = this.charAt(i);
+                if (c == quote) {
+                    String string = this.substring(this.position, i);
+                    this.position = i + 1;
+                    this.previous = c;
+                    return string;
+                }
+                if (c == '\\' || c == 0 || c == '\n' || c == '\r') {
+                    break;
+                }
+            }
+        }
+
         char c;
         StringBuilder sb = new StringBuilder();
         for (;;) {
@@ -391,6 +541,25 @@ public class JSONTokener {
          * formatting character.
          */
 
+        if (this.reader == null) {
+            int from = this.position - 1;
+            int i = this.position;
+            while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+                c = (i < this.end) ? this.charAt(i) : 0;
+                i++;
+            }
+            // Leave the tokener as back() does, the delimiter to be read next
+            this.position = i - 1;
+            this.previous = c;
+            this.usePrevious = true;
+            this.eof = false;
+            string = (i - 1 > from) ? this.substring(from, i - 1).trim() : "";
+            if ("".equals(string)) {
+                throw this.syntaxError("Missing value");
+            }
+            return JSONObject.stringToValue(string);
+        }
+
         StringBuilder sb = new StringBuilder();
         while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
             sb.append(c);
@@ -415,6 +584,24 @@ public class JSONTokener {
      */
     public char skipTo(char to) throws JSONException {
         char c;
+        if (this.reader == null) {
+            int startPosition = this.position;
+            boolean startUsePrevious = this.usePrevious;
+            char startPrevious = this.previous;
+            boolean startEof = this.eof;
+            do {
+                c = this.next();
+                if (c == 0) {
+                    this.position = startPosition;
+                    this.usePrevious = startUsePrevious;
+                    this.previous = startPrevious;
+                    this.eof = startEof;
+                    return c;
+                }
+            } while (c != to);
+            this.back();
+            return c;
+        }
         try {
             long startIndex = this.index;
             long startCharacter = this.character;
@@ -455,7 +642,37 @@ public class JSONTokener {
      * @return " at {index} [character {character} line {line}]"
      */
     public String toString() {
+        if (this.reader == null) {
+            return this.position();
+        }
         return " at " + this.index + " [character " + this.character + " line " +
             this.line + "]";
     }
+
+
+    /**
+     * Work out the position of an in-memory source, counting lines and
+     * characters as next() does for a Reader.
+     */
+    private String position() {
+        int consumed = this.position - this.start;
+        long character = 1;
+        long line = 1;
+        char previous = 0;
+        for (int i = 0; i < consumed; i++) {
+            int at = this.start + i;
+            char c = (at < this.end) ? this.charAt(at) : 0;
+            if (previous == '\r') {
+                line += 1;
+                character = c == '\n' ? 0 : 1;
+            } else if (c == '\n') {
+                line += 1;
+                character = 0;
+            } else {
+                character += 1;
+            }
+            previous = c;
+        }
+        return " at " + (this.position - this.start) + " [character " + character + " line " + line + "]";
+    }
 }
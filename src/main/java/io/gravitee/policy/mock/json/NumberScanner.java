@@ -0,0 +1,255 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+/**
+ * Recognize and parse the numbers of a JSON text in a single pass, without
+ * relying on exceptions for the strings which are not numbers.
+ * <p>
+ * The results are the ones of the original
+ * {@link JSONObject#stringToValue(String)}: an Integer or a Long for an
+ * integer written without leading zeros, a Double for a number with a
+ * fraction or an exponent (or <code>-0</code>), and nothing for anything
+ * else, an infinite double included.
+ *
+ * @author GraviteeSource Team
+ */
+final class NumberScanner {
+
+    private static final int CACHED_INT_MIN = -128;
+    private static final int CACHED_INT_MAX = 1023;
+    private static final Integer[] INTEGERS = new Integer[CACHED_INT_MAX - CACHED_INT_MIN + 1];
+
+    private static final int CACHED_DOUBLE_MAX = 255;
+    private static final Double[] DOUBLES = new Double[CACHED_DOUBLE_MAX + 1];
+
+    private static final Double NEGATIVE_ZERO = -0.0d;
+
+    /**
+     * The powers of ten exactly represented by a double.
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    /**
+     * Mantissas up to this value are exactly represented by a double.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    static {
+        for (int i = 0; i < INTEGERS.length; i++) {
+            INTEGERS[i] = CACHED_INT_MIN + i;
+        }
+        for (int i = 0; i < DOUBLES.length; i++) {
+            DOUBLES[i] = (double) i;
+        }
+        double power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+
+    private NumberScanner() {
+    }
+
+    /**
+     * @param string A non empty string.
+     * @return The number written by the string, or null if it is not a number.
+     */
+    static Number parse(String string) {
+        int len = string.length();
+        int i = 0;
+        boolean negative = string.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+
+        // Up to 18 significant digits are kept in the mantissa, the scale
+        // being the power of ten it is to be multiplied by
+        long mantissa = 0;
+        int significantDigits = 0;
+        int scale = 0;
+        boolean truncated = false;
+
+        int integerStart = i;
+        char c = 0;
+        for (; i < len; i++) {
+            c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (significantDigits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    significantDigits++;
+                }
+            } else {
+                scale++;
+                truncated |= c != '0';
+            }
+        }
+        int integerDigits = i - integerStart;
+
+        if (i == len) {
+            return integerDigits == 0 ? null : integer(string, negative, integerStart, integerDigits);
+        }
+        if (c != '.' && c != 'e' && c != 'E') {
+            // A number only when it is a double Double.valueOf accepts
+            boolean decimal = string.indexOf('.') >= 0 || string.indexOf('e') >= 0 || string.indexOf('E') >= 0;
+            return decimal ? fallback(string) : null;
+        }
+
+        int fractionDigits = 0;
+        if (c == '.') {
+            for (i++; i < len; i++) {
+                c = string.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                fractionDigits++;
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        significantDigits++;
+                    }
+                    scale--;
+                } else {
+                    truncated |= c != '0';
+                }
+            }
+        }
+        if (integerDigits + fractionDigits == 0) {
+            return fallback(string);
+        }
+
+        int exponent = 0;
+        if (i < len) {
+            c = string.charAt(i);
+            if (c != 'e' && c != 'E') {
+                return fallback(string);
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < len && (string.charAt(i) == '+' || string.charAt(i) == '-')) {
+                negativeExponent = string.charAt(i) == '-';
+                i++;
+            }
+            if (i == len) {
+                return fallback(string);
+            }
+            for (; i < len; i++) {
+                c = string.charAt(i);
+                if (c < '0' || c > '9') {
+                    return fallback(string);
+                }
+                if (exponent < 100000) {
+                    exponent = exponent * 10 + (c - '0');
+                }
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        scale += exponent;
+
+        double value;
+        if (!truncated && mantissa <= MAX_EXACT_MANTISSA && scale >= -22 && scale <= 22) {
+            // Both the mantissa and the power of ten are exact, so is the result of a single operation
+            value = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+            value = negative ? -value : value;
+        } else {
+            value = Double.parseDouble(string);
+        }
+        if (Double.isInfinite(value)) {
+            return null;
+        }
+        return (negative && value == 0) ? NEGATIVE_ZERO : cachedDouble(value);
+    }
+
+    private static Number integer(String string, boolean negative, int start, int digits) {
+        if (digits > 1 && string.charAt(start) == '0') {
+            // Leading zeros
+            return null;
+        }
+        if (negative && digits == 1 && string.charAt(start) == '0') {
+            return NEGATIVE_ZERO;
+        }
+        if (digits > 19) {
+            return null;
+        }
+
+        // Accumulated negatively, to reach Long.MIN_VALUE
+        long value = 0;
+        for (int i = start; i < start + digits; i++) {
+            int digit = string.charAt(i) - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                return null;
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                return null;
+            }
+            value = -value;
+        }
+
+        if (value >= CACHED_INT_MIN && value <= CACHED_INT_MAX) {
+            return INTEGERS[(int) value - CACHED_INT_MIN];
+        }
+        if (value == (int) value) {
+            return Integer.valueOf((int) value);
+        }
+        return Long.valueOf(value);
+    }
+
+    private static Double cachedDouble(double value) {
+        if (value >= 0 && value <= CACHED_DOUBLE_MAX && value == (int) value
+                && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0d)) {
+            return DOUBLES[(int) value];
+        }
+        return Double.valueOf(value);
+    }
+
+    /**
+     * Double.valueOf also accepts some forms the scanner does not, such as
+     * hexadecimal numbers or a type suffix. They are given to it when they
+     * may be numbers, which is cheaper than failing on every date or version
+     * number.
+     */
+    private static Number fallback(String string) {
+        int dots = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '.') {
+                dots++;
+            } else if ("0123456789+-eEfFdDxXpPaAbBcC".indexOf(c) < 0 && c > ' ') {
+                return null;
+            }
+        }
+        if (dots > 1) {
+            return null;
+        }
+        try {
+            Double d = Double.valueOf(string);
+            if (!d.isInfinite() && !d.isNaN()) {
+                return d;
+            }
+        } catch (NumberFormatException ignore) {
+        }
+        return null;
+    }
+}
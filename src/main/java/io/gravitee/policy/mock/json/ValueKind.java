@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * How the values of a class are wrapped by {@link JSONObject#wrap(Object)}
+ * and written by <code>JSONObject.writeValue</code>.
+ * <p>
+ * The chain of type tests of both methods only depends on the class of the
+ * value: it is run once per class, and its outcome kept through a ClassValue.
+ *
+ * @author GraviteeSource Team
+ */
+final class ValueKind {
+
+    /**
+     * How a value is wrapped.
+     */
+    enum Wrap {
+        /** A JSON value, kept as is. */
+        AS_IS,
+        /** A Collection, wrapped in a JSONArray. */
+        COLLECTION,
+        /** A Java array, wrapped in a JSONArray. */
+        ARRAY,
+        /** A Map, wrapped in a JSONObject. */
+        MAP,
+        /** A JDK class, converted to its string form. */
+        TO_STRING,
+        /** Any other object, converted to a JSONObject from its getters. */
+        BEAN
+    }
+
+    /**
+     * How a value is written.
+     */
+    enum Write {
+        NULL,
+        JSON_OBJECT,
+        JSON_ARRAY,
+        MAP,
+        COLLECTION,
+        ARRAY,
+        NUMBER,
+        BOOLEAN,
+        JSON_STRING,
+        /** Quoted from its string form. */
+        STRING
+    }
+
+    private static final ClassValue<ValueKind> KINDS = new ClassValue<ValueKind>() {
+        @Override
+        protected ValueKind computeValue(Class<?> type) {
+            return new ValueKind(type);
+        }
+    };
+
+    private static final Class<?>[] AS_IS_TYPES = {
+            JSONObject.class, JSONArray.class, JSONObject.NULL.getClass(), JSONString.class,
+            Byte.class, Character.class, Short.class, Integer.class, Long.class, Boolean.class,
+            Float.class, Double.class, String.class, BigInteger.class, BigDecimal.class
+    };
+
+    final Wrap wrap;
+    final Write write;
+
+    /**
+     * Whether a value has to be checked for equality with null before being
+     * written, as a JSONObject.NULL lookalike would be. Not needed for the
+     * classes relying on Object.equals or coming with the JDK.
+     */
+    final boolean nullCheck;
+
+    private ValueKind(Class<?> type) {
+        this.wrap = wrap(type);
+        this.write = write(type);
+        this.nullCheck = this.write != Write.NULL && overridesEquals(type) && type.getClassLoader() != null;
+    }
+
+    static ValueKind of(Class<?> type) {
+        return KINDS.get(type);
+    }
+
+    private static Wrap wrap(Class<?> type) {
+        for (Class<?> asIs : AS_IS_TYPES) {
+            if (asIs.isAssignableFrom(type)) {
+                return Wrap.AS_IS;
+            }
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return Wrap.COLLECTION;
+        }
+        if (type.isArray()) {
+            return Wrap.ARRAY;
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return Wrap.MAP;
+        }
+        Package typePackage = type.getPackage();
+        String typePackageName = typePackage != null ? typePackage.getName() : "";
+        if (typePackageName.startsWith("java.")
+                || typePackageName.startsWith("javax.")
+                || type.getClassLoader() == null) {
+            return Wrap.TO_STRING;
+        }
+        return Wrap.BEAN;
+    }
+
+    private static Write write(Class<?> type) {
+        if (type == JSONObject.NULL.getClass()) {
+            return Write.NULL;
+        }
+        if (JSONObject.class.isAssignableFrom(type)) {
+            return Write.JSON_OBJECT;
+        }
+        if (JSONArray.class.isAssignableFrom(type)) {
+            return Write.JSON_ARRAY;
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return Write.MAP;
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return Write.COLLECTION;
+        }
+        if (type.isArray()) {
+            return Write.ARRAY;
+        }
+        if (Number.class.isAssignableFrom(type)) {
+            return Write.NUMBER;
+        }
+        if (Boolean.class.isAssignableFrom(type)) {
+            return Write.BOOLEAN;
+        }
+        if (JSONString.class.isAssignableFrom(type)) {
+            return Write.JSON_STRING;
+        }
+        return Write.STRING;
+    }
+
+    private static boolean overridesEquals(Class<?> type) {
+        try {
+            return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return true;
+        }
+    }
+}
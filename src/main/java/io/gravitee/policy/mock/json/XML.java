@@ -39,7 +39,13 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * This provides static methods to convert an XML text into a JSONObject, and to
@@ -93,30 +99,85 @@ public class XML {
      * @return The escaped string.
      */
     public static String escape(String string) {
-        StringBuilder sb = new StringBuilder(string.length());
-        for (int i = 0, length = string.length(); i < length; i++) {
-            char c = string.charAt(i);
-            switch (c) {
+        int first = firstEscape(string, 0);
+        if (first < 0) {
+            // Nothing to replace, the most common case
+            return string;
+        }
+        StringBuilder sb = new StringBuilder(string.length() + 16);
+        try {
+            escapeFrom(string, first, sb);
+        } catch (IOException ignore) {
+            // Not thrown by a StringBuilder
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Append a string with XML escapes, as {@link #escape(String)} does. The
+     * runs of characters to keep as they are are appended in one go.
+     *
+     * @param string
+     *            The string to be escaped.
+     * @param appendable
+     *            Where the escaped string is appended.
+     * @throws IOException
+     *            If the appendable fails.
+     */
+    public static void escape(String string, Appendable appendable) throws IOException {
+        escapeFrom(string, firstEscape(string, 0), appendable);
+    }
+
+    private static void escapeFrom(String string, int first, Appendable appendable) throws IOException {
+        int start = 0;
+        for (int i = first; i >= 0; i = firstEscape(string, start)) {
+            appendRun(appendable, string, start, i);
+            switch (string.charAt(i)) {
             case '&':
-                sb.append("&amp;");
+                appendable.append("&amp;");
                 break;
             case '<':
-                sb.append("&lt;");
+                appendable.append("&lt;");
                 break;
             case '>':
-                sb.append("&gt;");
+                appendable.append("&gt;");
                 break;
             case '"':
-                sb.append("&quot;");
-                break;
-            case '\'':
-                sb.append("&apos;");
+                appendable.append("&quot;");
                 break;
             default:
-                sb.append(c);
+                appendable.append("&apos;");
             }
+            start = i + 1;
+        }
+        appendRun(appendable, string, start, string.length());
+    }
+
+    /**
+     * @return the index of the first character to be escaped from the given
+     *         index, or -1 if there is none.
+     */
+    private static int firstEscape(String string, int from) {
+        for (int i = from, length = string.length(); i < length; i++) {
+            char c = string.charAt(i);
+            // '>' is the greatest of the characters to be escaped
+            if (c <= '>' && (c == '&' || c == '<' || c == '>' || c == '"' || c == '\'')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendRun(Appendable appendable, String string, int start, int end) throws IOException {
+        if (start == end) {
+            return;
+        }
+        if (appendable instanceof Writer) {
+            // Writer.append(CharSequence, int, int) copies the run to a new String
+            ((Writer) appendable).write(string, start, end - start);
+        } else {
+            appendable.append(string, start, end);
         }
-        return sb.toString();
     }
 
     /**
@@ -144,7 +205,7 @@ public class XML {
      * Scan the content following the named tag, attaching it to the context.
      * 
      * @param x
-     *            The XMLTokener containing the source string.
+     *            The XMLScanner or XMLTokener containing the source string.
      * @param context
      *            The JSONObject that will include the new material.
      * @param name
@@ -152,7 +213,7 @@ public class XML {
      * @return true if the close tag is processed.
      * @throws JSONException
      */
-    private static boolean parse(XMLTokener x, JSONObject context, String name)
+    private static boolean parse(XMLInput x, JSONObject context, String name)
             throws JSONException {
         char c;
         int i;
@@ -340,8 +401,25 @@ public class XML {
      * @throws JSONException
      */
     public static JSONObject toJSONObject(String string) throws JSONException {
+        return toJSONObject(new XMLScanner(string));
+    }
+
+    /**
+     * Convert a well-formed (but not necessarily valid) XML text into a
+     * JSONObject, as {@link #toJSONObject(String)} does, reading it as it is
+     * converted.
+     *
+     * @param reader
+     *            The source text.
+     * @return A JSONObject containing the structured data from the XML text.
+     * @throws JSONException
+     */
+    public static JSONObject toJSONObject(Reader reader) throws JSONException {
+        return toJSONObject(new XMLScanner(reader));
+    }
+
+    private static JSONObject toJSONObject(XMLInput x) throws JSONException {
         JSONObject jo = new JSONObject();
-        XMLTokener x = new XMLTokener(string);
         while (x.more() && x.skipPast("<")) {
             parse(x, jo, null);
         }
@@ -372,112 +450,252 @@ public class XML {
      */
     public static String toString(Object object, String tagName)
             throws JSONException {
-        StringBuilder sb = new StringBuilder();
-        JSONArray ja;
-        JSONObject jo;
-        String key;
-        Iterator<String> keys;
-        String string;
-        Object value;
+        return write(object, tagName, new StringBuilder()).toString();
+    }
+
+    /**
+     * Convert a JSONObject into a well-formed, element-normal XML text,
+     * encoded in UTF-8, as {@link #toString(Object, String)} does but without
+     * building a String first.
+     *
+     * @param object
+     *            A JSONObject.
+     * @param tagName
+     *            The optional name of the enclosing tag.
+     * @return The UTF-8 encoded text.
+     * @throws JSONException
+     */
+    public static byte[] toByteArray(Object object, String tagName)
+            throws JSONException {
+        try (JSONByteWriter writer = new JSONByteWriter()) {
+            write(object, tagName, writer);
+            return writer.toByteArray();
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+    /**
+     * Write a JSONObject as a well-formed, element-normal XML text, as
+     * {@link #toString(Object, String)} does. The elements are written as they
+     * are visited, nested values being tracked on an explicit stack rather
+     * than through recursive calls: the memory used does not depend on the
+     * size of the text, and a document of any depth is written in constant
+     * stack space.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param object
+     *            A JSONObject.
+     * @param tagName
+     *            The optional name of the enclosing tag.
+     * @param appendable
+     *            Where the text is written, such as a Writer or a
+     *            StringBuilder.
+     * @return The appendable.
+     * @throws JSONException
+     */
+    public static <T extends Appendable> T write(Object object, String tagName, T appendable)
+            throws JSONException {
+        try {
+            new XMLSerializer(appendable).write(object, tagName);
+            return appendable;
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
 
-        if (object instanceof JSONObject) {
+    /**
+     * Write the XML text of a value, tracking the objects and arrays being
+     * written on an explicit stack.
+     */
+    private static final class XMLSerializer {
+
+        /**
+         * From this depth on, the objects and arrays being written are checked
+         * for cycles, which would otherwise be written until the memory is
+         * exhausted.
+         */
+        private static final int CYCLE_CHECK_DEPTH = 1024;
+
+        /**
+         * An object or an array being written.
+         */
+        private static final class Frame {
+
+            final JSONObject object;
+            final Iterator<String> keys;
+            final JSONArray array;
+            int index;
+
+            /**
+             * The name of the elements of an array, or of the tag enclosing
+             * an object.
+             */
+            final String tagName;
+
+            /**
+             * Whether the array is the value of a member: its nested arrays
+             * are then written in an element named after the member.
+             */
+            final boolean member;
+
+            /**
+             * The name of the element to close once the object or the array
+             * is written, or null.
+             */
+            final String closeTag;
+
+            Frame(JSONObject object, JSONArray array, String tagName, boolean member, String closeTag) {
+                this.object = object;
+                this.keys = (object != null) ? object.keys() : null;
+                this.array = array;
+                this.tagName = tagName;
+                this.member = member;
+                this.closeTag = closeTag;
+            }
 
-            // Emit <tagName>
-            if (tagName != null) {
-                sb.append('<');
-                sb.append(tagName);
-                sb.append('>');
+            Object container() {
+                return (this.object != null) ? this.object : this.array;
             }
+        }
 
-            // Loop thru the keys.
-            jo = (JSONObject) object;
-            keys = jo.keys();
-            while (keys.hasNext()) {
-                key = keys.next();
-                value = jo.opt(key);
-                if (value == null) {
-                    value = "";
-                } else if (value.getClass().isArray()) {
-                    value = new JSONArray(value);
-                }
-                string = value instanceof String ? (String) value : null;
+        private final Appendable appendable;
+        private final List<Frame> stack = new ArrayList<Frame>();
+        private IdentityHashMap<Object, Boolean> open;
 
-                // Emit content in body
-                if ("content".equals(key)) {
-                    if (value instanceof JSONArray) {
-                        ja = (JSONArray) value;
-                        int i = 0;
-                        for (Object val : ja) {
-                            if (i > 0) {
-                                sb.append('\n');
-                            }
-                            sb.append(escape(val.toString()));
-                            i++;
-                        }
-                    } else {
-                        sb.append(escape(value.toString()));
-                    }
+        XMLSerializer(Appendable appendable) {
+            this.appendable = appendable;
+        }
 
-                    // Emit an array of similar keys
+        void write(Object value, String tagName) throws JSONException, IOException {
+            this.writeValue(value, tagName);
 
-                } else if (value instanceof JSONArray) {
-                    ja = (JSONArray) value;
-                    for (Object val : ja) {
-                        if (val instanceof JSONArray) {
-                            sb.append('<');
-                            sb.append(key);
-                            sb.append('>');
-                            sb.append(toString(val));
-                            sb.append("</");
-                            sb.append(key);
-                            sb.append('>');
-                        } else {
-                            sb.append(toString(val, key));
-                        }
+            while (!this.stack.isEmpty()) {
+                Frame frame = this.stack.get(this.stack.size() - 1);
+                if (frame.object != null) {
+                    if (frame.keys.hasNext()) {
+                        String key = frame.keys.next();
+                        this.writeMember(key, frame.object.opt(key));
+                        continue;
+                    }
+                } else if (frame.index < frame.array.length()) {
+                    Object element = frame.array.opt(frame.index++);
+                    if (frame.member && element instanceof JSONArray) {
+                        this.open(frame.tagName);
+                        this.push(new Frame(null, (JSONArray) element, "array", false, frame.tagName));
+                    } else {
+                        this.writeValue(element, frame.tagName);
                     }
-                } else if ("".equals(value)) {
-                    sb.append('<');
-                    sb.append(key);
-                    sb.append("/>");
+                    continue;
+                }
 
-                    // Emit a new tag <k>
+                this.pop();
+                if (frame.closeTag != null) {
+                    this.close(frame.closeTag);
+                }
+            }
+        }
 
-                } else {
-                    sb.append(toString(value, key));
+        private void push(Frame frame) throws JSONException {
+            if (this.stack.size() == CYCLE_CHECK_DEPTH) {
+                this.open = new IdentityHashMap<Object, Boolean>();
+                for (Frame opened : this.stack) {
+                    this.open.put(opened.container(), Boolean.TRUE);
                 }
             }
-            if (tagName != null) {
+            if (this.open != null && this.open.put(frame.container(), Boolean.TRUE) != null) {
+                throw new JSONException("Cycle detected while writing an XML text");
+            }
 
-                // Emit the </tagname> close tag
-                sb.append("</");
-                sb.append(tagName);
-                sb.append('>');
+            this.stack.add(frame);
+        }
+
+        private void pop() {
+            Frame frame = this.stack.remove(this.stack.size() - 1);
+            if (this.open != null) {
+                this.open.remove(frame.container());
+            }
+        }
+
+        private void writeMember(String key, Object value) throws JSONException, IOException {
+            if (value == null) {
+                value = "";
+            } else if (value.getClass().isArray()) {
+                value = new JSONArray(value);
             }
-            return sb.toString();
 
+            if ("content".equals(key)) {
+                // Emit content in body
+                if (value instanceof JSONArray) {
+                    JSONArray ja = (JSONArray) value;
+                    int i = 0;
+                    for (Object val : ja) {
+                        if (i > 0) {
+                            this.appendable.append('\n');
+                        }
+                        escape(val.toString(), this.appendable);
+                        i++;
+                    }
+                } else {
+                    escape(value.toString(), this.appendable);
+                }
+            } else if (value instanceof JSONArray) {
+                // Emit an array of similar keys
+                this.push(new Frame(null, (JSONArray) value, key, true, null));
+            } else if ("".equals(value)) {
+                this.appendable.append('<').append(key).append("/>");
+            } else {
+                this.writeValue(value, key);
+            }
         }
 
-        if (object != null) {
-            if (object.getClass().isArray()) {
-                object = new JSONArray(object);
+        /**
+         * Write a scalar value, or open an object or an array.
+         */
+        private void writeValue(Object object, String tagName) throws JSONException, IOException {
+            if (object instanceof JSONObject) {
+                if (tagName != null) {
+                    this.open(tagName);
+                }
+                this.push(new Frame((JSONObject) object, null, tagName, false, tagName));
+                return;
             }
 
-            if (object instanceof JSONArray) {
-                ja = (JSONArray) object;
-                for (Object val : ja) {
+            if (object != null) {
+                if (object.getClass().isArray()) {
+                    object = new JSONArray(object);
+                }
+                if (object instanceof JSONArray) {
                     // XML does not have good support for arrays. If an array
                     // appears in a place where XML is lacking, synthesize an
                     // <array> element.
-                    sb.append(toString(val, tagName == null ? "array" : tagName));
+                    this.push(new Frame(null, (JSONArray) object, tagName == null ? "array" : tagName,
+                            false, null));
+                    return;
                 }
-                return sb.toString();
+            }
+
+            String string = (object == null) ? "null" : object.toString();
+            if (tagName == null) {
+                this.appendable.append('"');
+                escape(string, this.appendable);
+                this.appendable.append('"');
+            } else if (string.isEmpty()) {
+                this.appendable.append('<').append(tagName).append("/>");
+            } else {
+                this.open(tagName);
+                escape(string, this.appendable);
+                this.close(tagName);
             }
         }
 
-        string = (object == null) ? "null" : escape(object.toString());
-        return (tagName == null) ? "\"" + string + "\""
-                : (string.length() == 0) ? "<" + tagName + "/>" : "<" + tagName
-                        + ">" + string + "</" + tagName + ">";
+        private void open(String tagName) throws IOException {
+            this.appendable.append('<').append(tagName).append('>');
+        }
 
+        private void close(String tagName) throws IOException {
+            this.appendable.append("</").append(tagName).append('>');
+        }
     }
 }
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+/**
+ * The tokens read by {@link XML} and {@link JSONML} out of an XML text,
+ * either through an {@link XMLTokener} or through an {@link XMLScanner}.
+ * See {@link XMLTokener} for the description of each method.
+ *
+ * @author GraviteeSource Team
+ */
+interface XMLInput {
+
+    char next() throws JSONException;
+
+    void back() throws JSONException;
+
+    boolean more() throws JSONException;
+
+    boolean skipPast(String to) throws JSONException;
+
+    Object nextToken() throws JSONException;
+
+    Object nextContent() throws JSONException;
+
+    Object nextMeta() throws JSONException;
+
+    String nextCDATA() throws JSONException;
+
+    JSONException syntaxError(String message);
+}
@@ -0,0 +1,634 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Read the tokens of an XML text for {@link XML#toJSONObject(String)} and
+ * {@link JSONML}, with the same results as an {@link XMLTokener}, except for
+ * the position reported by syntax errors: it is the offset of the offending
+ * character, never past the end of the text, and a CRLF, CR or LF line break
+ * counts as a single line.
+ * <p>
+ * The text is read straight out of a char array: either the array given to
+ * the scanner, or a buffer filled from a CharSequence or a Reader, chunk by
+ * chunk. Names, attribute values and text content are built from the buffer
+ * in one go, and entities are decoded without any lookup table. Line and
+ * character positions are only worked out when a syntax error is reported.
+ *
+ * @author GraviteeSource Team
+ */
+public final class XMLScanner implements XMLInput {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final CharSequence sequence;
+    private int sequenceIndex;
+    private boolean exhausted;
+
+    private char[] buffer;
+    private int position;
+    private int limit;
+
+    /**
+     * The index of the first character of the token being read, which is kept
+     * in the buffer when it is filled, or -1.
+     */
+    private int mark = -1;
+
+    /**
+     * The lowest position back() can step back to.
+     */
+    private final int floor;
+
+    /**
+     * Whether the last call to next() reached the end of the source.
+     */
+    private boolean atEnd;
+
+    /**
+     * The position in the source of the first character of the buffer.
+     */
+    private long offset;
+
+    /*
+     * The lines seen up to the given position in the source.
+     */
+    private long counted;
+    private long line = 1;
+    private long lineStart;
+    private boolean afterCarriageReturn;
+
+    private final StringBuilder entityName = new StringBuilder(8);
+
+    /**
+     * Construct an XMLScanner reading a CharSequence, such as a String.
+     *
+     * @param source The XML text.
+     */
+    public XMLScanner(CharSequence source) {
+        this.reader = null;
+        this.sequence = source;
+        this.buffer = new char[Math.max(16, Math.min(BUFFER_SIZE, source.length()))];
+        this.floor = 0;
+    }
+
+    /**
+     * Construct an XMLScanner reading a part of a char array.
+     *
+     * @param chars  The XML text. It is not copied, and should not be modified
+     *               while it is read.
+     * @param start  The index of the first character to read.
+     * @param length The number of characters to read.
+     */
+    public XMLScanner(char[] chars, int start, int length) {
+        if (start < 0 || length < 0 || start + length > chars.length) {
+            throw new IndexOutOfBoundsException("start " + start + ", length " + length + ", size " + chars.length);
+        }
+        this.reader = null;
+        this.sequence = null;
+        this.exhausted = true;
+        this.buffer = chars;
+        this.position = start;
+        this.limit = start + length;
+        this.floor = start;
+        this.offset = -start;
+    }
+
+    /**
+     * Construct an XMLScanner reading a Reader, through a buffer of its own.
+     *
+     * @param reader The XML text.
+     */
+    public XMLScanner(Reader reader) {
+        this.reader = reader;
+        this.sequence = null;
+        this.buffer = new char[BUFFER_SIZE];
+        this.floor = 0;
+    }
+
+    /**
+     * Get the next character.
+     *
+     * @return The next character, or 0 if past the end of the source.
+     */
+    @Override
+    public char next() throws JSONException {
+        if (this.position < this.limit || this.fill()) {
+            return this.buffer[this.position++];
+        }
+        this.atEnd = true;
+        return 0;
+    }
+
+    /**
+     * Back up one character, so that the last character read is read again.
+     */
+    @Override
+    public void back() throws JSONException {
+        if (this.atEnd) {
+            this.atEnd = false;
+            return;
+        }
+        if (this.position <= this.floor) {
+            throw new JSONException("Stepping back two steps is not supported");
+        }
+        this.position -= 1;
+    }
+
+    /**
+     * @return true if there is a character left to read, other than 0.
+     */
+    @Override
+    public boolean more() throws JSONException {
+        if (this.position >= this.limit && !this.fill()) {
+            return false;
+        }
+        return this.buffer[this.position] != 0;
+    }
+
+    /**
+     * Skip characters until past the requested string. If it is not found,
+     * the scanner is left at the end of the source.
+     *
+     * @param to A string to skip past.
+     * @return true if the string is found.
+     */
+    @Override
+    public boolean skipPast(String to) throws JSONException {
+        int length = to.length();
+        if (length == 1) {
+            char target = to.charAt(0);
+            for (;;) {
+                while (this.position < this.limit) {
+                    char c = this.buffer[this.position++];
+                    if (c == target) {
+                        return true;
+                    }
+                    if (c == 0) {
+                        return false;
+                    }
+                }
+                if (!this.fill()) {
+                    this.atEnd = true;
+                    return false;
+                }
+            }
+        }
+
+        // The last characters read, in a circular buffer
+        char[] circle = new char[length];
+        for (int i = 0; i < length; i++) {
+            char c = this.next();
+            if (c == 0) {
+                return false;
+            }
+            circle[i] = c;
+        }
+        for (int oldest = 0; ; ) {
+            int j = oldest;
+            int i = 0;
+            while (i < length && circle[j] == to.charAt(i)) {
+                i++;
+                j = (j + 1 == length) ? 0 : j + 1;
+            }
+            if (i == length) {
+                return true;
+            }
+            char c = this.next();
+            if (c == 0) {
+                return false;
+            }
+            circle[oldest] = c;
+            oldest = (oldest + 1 == length) ? 0 : oldest + 1;
+        }
+    }
+
+    /**
+     * Get the next token found inside of angle brackets: one of the
+     * characters <code>/ &gt; = ! ?</code> as a Character, a quoted string
+     * or a name.
+     *
+     * @return a String or a Character.
+     * @throws JSONException If the XML is not well formed.
+     */
+    @Override
+    public Object nextToken() throws JSONException {
+        char c = this.nextNonWhitespace();
+        switch (c) {
+        case 0:
+            throw this.syntaxError("Misshaped element");
+        case '<':
+            throw this.syntaxError("Misplaced '<'");
+        case '>':
+            return XML.GT;
+        case '/':
+            return XML.SLASH;
+        case '=':
+            return XML.EQ;
+        case '!':
+            return XML.BANG;
+        case '?':
+            return XML.QUEST;
+        case '"':
+        case '\'':
+            return this.nextQuoted(c);
+        default:
+            return this.nextName();
+        }
+    }
+
+    /**
+     * Get the next content text, trimmed, or the '&lt;' character which
+     * begins a markup tag.
+     *
+     * @return A string, or a '&lt;' Character, or null if there is no more
+     *         source text.
+     */
+    @Override
+    public Object nextContent() throws JSONException {
+        char c = this.nextNonWhitespace();
+        if (c == 0) {
+            return null;
+        }
+        if (c == '<') {
+            return XML.LT;
+        }
+
+        this.mark = this.position - 1;
+        StringBuilder sb = null;
+        for (;;) {
+            if (c == '<' || c == 0) {
+                this.back();
+                String content = (sb != null) ? sb.toString().trim() : this.trimmed(this.mark, this.position);
+                this.mark = -1;
+                return content;
+            }
+            if (c == '&') {
+                if (sb == null) {
+                    sb = new StringBuilder(this.position - this.mark + 16);
+                    sb.append(this.buffer, this.mark, this.position - 1 - this.mark);
+                    this.mark = -1;
+                }
+                this.appendEntity(sb);
+            } else if (sb != null) {
+                sb.append(c);
+            }
+            c = this.next();
+        }
+    }
+
+    /**
+     * Get the next meta token, when skipping over <code>&lt;!...&gt;</code>
+     * structures.
+     *
+     * @return Syntax characters (<code>&lt; &gt; / = ! ?</code>) are returned
+     *         as Character, and strings and names are returned as Boolean.
+     * @throws JSONException If a string is not properly closed or if the XML
+     *         is badly structured.
+     */
+    @Override
+    public Object nextMeta() throws JSONException {
+        char c = this.nextNonWhitespace();
+        switch (c) {
+        case 0:
+            throw this.syntaxError("Misshaped meta tag");
+        case '<':
+            return XML.LT;
+        case '>':
+            return XML.GT;
+        case '/':
+            return XML.SLASH;
+        case '=':
+            return XML.EQ;
+        case '!':
+            return XML.BANG;
+        case '?':
+            return XML.QUEST;
+        case '"':
+        case '\'':
+            char q = c;
+            for (;;) {
+                c = this.next();
+                if (c == 0) {
+                    throw this.syntaxError("Unterminated string");
+                }
+                if (c == q) {
+                    return Boolean.TRUE;
+                }
+            }
+        default:
+            for (;;) {
+                c = this.next();
+                if (isWhitespace(c)) {
+                    return Boolean.TRUE;
+                }
+                switch (c) {
+                case 0:
+                case '<':
+                case '>':
+                case '/':
+                case '=':
+                case '!':
+                case '?':
+                case '"':
+                case '\'':
+                    this.back();
+                    return Boolean.TRUE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the text in a CDATA block.
+     *
+     * @return The string up to the <code>]]&gt;</code>.
+     * @throws JSONException If the <code>]]&gt;</code> is not found.
+     */
+    @Override
+    public String nextCDATA() throws JSONException {
+        this.mark = this.position;
+        for (;;) {
+            char c = this.next();
+            if (c == 0) {
+                this.mark = -1;
+                throw this.syntaxError("Unclosed CDATA");
+            }
+            if (c == '>' && this.position - 3 >= this.mark
+                    && this.buffer[this.position - 2] == ']' && this.buffer[this.position - 3] == ']') {
+                String cdata = new String(this.buffer, this.mark, this.position - 3 - this.mark);
+                this.mark = -1;
+                return cdata;
+            }
+        }
+    }
+
+    /**
+     * Make a JSONException to signal a syntax error.
+     *
+     * @param message The error message.
+     * @return A JSONException object, suitable for throwing
+     */
+    @Override
+    public JSONException syntaxError(String message) {
+        return new JSONException(message + this.toString());
+    }
+
+    /**
+     * @return " at {index} [character {character} line {line}]"
+     */
+    @Override
+    public String toString() {
+        this.countLines(this.position);
+        long index = this.offset + this.position;
+        return " at " + index + " [character " + (index - this.lineStart + 1) + " line " + this.line + "]";
+    }
+
+    private char nextNonWhitespace() throws JSONException {
+        char c;
+        do {
+            c = this.next();
+        } while (isWhitespace(c));
+        return c;
+    }
+
+    /**
+     * Read a quoted string, the opening quote being read already.
+     */
+    private String nextQuoted(char quote) throws JSONException {
+        this.mark = this.position;
+        StringBuilder sb = null;
+        for (;;) {
+            char c = this.next();
+            if (c == 0) {
+                this.mark = -1;
+                throw this.syntaxError("Unterminated string");
+            }
+            if (c == quote) {
+                String string = (sb != null) ? sb.toString()
+                        : new String(this.buffer, this.mark, this.position - 1 - this.mark);
+                this.mark = -1;
+                return string;
+            }
+            if (c == '&') {
+                if (sb == null) {
+                    sb = new StringBuilder(this.position - this.mark + 16);
+                    sb.append(this.buffer, this.mark, this.position - 1 - this.mark);
+                    this.mark = -1;
+                }
+                this.appendEntity(sb);
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Read a name, its first character being read already.
+     */
+    private String nextName() throws JSONException {
+        this.mark = this.position - 1;
+        for (;;) {
+            char c = this.next();
+            int end;
+            if (isWhitespace(c)) {
+                end = this.position - 1;
+            } else {
+                switch (c) {
+                case 0:
+                    // Unlike the end of the source, a null character has been read
+                    end = this.atEnd ? this.position : this.position - 1;
+                    break;
+                case '>':
+                case '/':
+                case '=':
+                case '!':
+                case '?':
+                case '[':
+                case ']':
+                    this.back();
+                    end = this.position;
+                    break;
+                case '<':
+                case '"':
+                case '\'':
+                    this.mark = -1;
+                    throw this.syntaxError("Bad character in a name");
+                default:
+                    continue;
+                }
+            }
+            String name = new String(this.buffer, this.mark, end - this.mark);
+            this.mark = -1;
+            return name;
+        }
+    }
+
+    /**
+     * Decode an entity, the ampersand being read already. The entities
+     * <code>&amp;amp; &amp;apos; &amp;gt; &amp;lt; &amp;quot;</code> are
+     * decoded, any other one is appended as it is, in lower case.
+     */
+    private void appendEntity(StringBuilder sb) throws JSONException {
+        StringBuilder name = this.entityName;
+        name.setLength(0);
+        for (;;) {
+            char c = this.next();
+            if (Character.isLetterOrDigit(c) || c == '#') {
+                name.append(Character.toLowerCase(c));
+            } else if (c == ';') {
+                break;
+            } else {
+                throw this.syntaxError("Missing ';' in XML entity: &" + name);
+            }
+        }
+
+        char decoded = 0;
+        switch (name.length()) {
+        case 2:
+            if (name.charAt(1) == 't') {
+                decoded = (name.charAt(0) == 'l') ? '<' : (name.charAt(0) == 'g') ? '>' : 0;
+            }
+            break;
+        case 3:
+            if (name.charAt(0) == 'a' && name.charAt(1) == 'm' && name.charAt(2) == 'p') {
+                decoded = '&';
+            }
+            break;
+        case 4:
+            if (name.charAt(0) == 'a' && name.charAt(1) == 'p' && name.charAt(2) == 'o' && name.charAt(3) == 's') {
+                decoded = '\'';
+            } else if (name.charAt(0) == 'q' && name.charAt(1) == 'u' && name.charAt(2) == 'o'
+                    && name.charAt(3) == 't') {
+                decoded = '"';
+            }
+            break;
+        default:
+            break;
+        }
+
+        if (decoded != 0) {
+            sb.append(decoded);
+        } else {
+            sb.append('&').append(name).append(';');
+        }
+    }
+
+    private String trimmed(int start, int end) {
+        while (start < end && this.buffer[start] <= ' ') {
+            start++;
+        }
+        while (end > start && this.buffer[end - 1] <= ' ') {
+            end--;
+        }
+        return new String(this.buffer, start, end - start);
+    }
+
+    private static boolean isWhitespace(char c) {
+        if (c <= ' ') {
+            return Character.isWhitespace(c);
+        }
+        return c >= 0x80 && Character.isWhitespace(c);
+    }
+
+    /**
+     * Read more characters into the buffer, keeping the token being read and
+     * the last character read, for back().
+     *
+     * @return true if characters have been read.
+     */
+    private boolean fill() throws JSONException {
+        if (this.exhausted) {
+            return false;
+        }
+
+        int keep = (this.mark >= 0) ? this.mark : Math.max(this.position - 1, 0);
+        if (keep > 0) {
+            this.countLines(keep);
+            System.arraycopy(this.buffer, keep, this.buffer, 0, this.limit - keep);
+            this.offset += keep;
+            this.position -= keep;
+            this.limit -= keep;
+            if (this.mark >= 0) {
+                this.mark -= keep;
+            }
+        }
+        if (this.limit == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+        }
+
+        int read = this.read(this.limit, this.buffer.length - this.limit);
+        if (read <= 0) {
+            this.exhausted = true;
+            return false;
+        }
+        this.limit += read;
+        return true;
+    }
+
+    private int read(int start, int length) throws JSONException {
+        if (this.reader != null) {
+            try {
+                int read;
+                do {
+                    read = this.reader.read(this.buffer, start, length);
+                } while (read == 0);
+                return read;
+            } catch (IOException exception) {
+                throw new JSONException(exception);
+            }
+        }
+
+        int read = Math.min(length, this.sequence.length() - this.sequenceIndex);
+        if (this.sequence instanceof String) {
+            ((String) this.sequence).getChars(this.sequenceIndex, this.sequenceIndex + read, this.buffer, start);
+        } else {
+            for (int i = 0; i < read; i++) {
+                this.buffer[start + i] = this.sequence.charAt(this.sequenceIndex + i);
+            }
+        }
+        this.sequenceIndex += read;
+        return read;
+    }
+
+    /**
+     * Count the lines of the buffer up to the given index.
+     */
+    private void countLines(int end) {
+        for (int i = (int) (this.counted - this.offset); i < end; i++) {
+            char c = this.buffer[i];
+            if (c == '\n') {
+                if (!this.afterCarriageReturn) {
+                    this.line += 1;
+                }
+                this.lineStart = this.offset + i + 1;
+                this.afterCarriageReturn = false;
+            } else if (c == '\r') {
+                this.line += 1;
+                this.lineStart = this.offset + i + 1;
+                this.afterCarriageReturn = true;
+            } else {
+                this.afterCarriageReturn = false;
+            }
+        }
+        this.counted = Math.max(this.counted, this.offset + end);
+    }
+}
@@ -45,7 +45,7 @@ SOFTWARE.
  * @author JSON.org
  * @version 2015-12-09
  */
-public class XMLTokener extends JSONTokener {
+public class XMLTokener extends JSONTokener implements XMLInput {
 
 
    /** The table of entity values. It initially contains Character values for
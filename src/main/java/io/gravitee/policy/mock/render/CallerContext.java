@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.render;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+/**
+ * The Vert.x context a request is served from.
+ *
+ * Renders run on a worker pool, and budgets expire on a timer thread: the response must be handed back to the
+ * gateway from the context of the request, as the response handler and the connection it writes to are not
+ * thread-safe.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CallerContext {
+
+    private final Context context;
+
+    private CallerContext(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @return the context of the calling thread, if any.
+     */
+    public static CallerContext capture() {
+        return new CallerContext(Vertx.currentContext());
+    }
+
+    /**
+     * Run the given task on the captured context, directly if the calling thread is already running it or if
+     * there was no context to capture.
+     */
+    public void run(Runnable task) {
+        if (context == null || Vertx.currentContext() == context) {
+            task.run();
+        } else {
+            context.runOnContext(event -> task.run());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.render;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, with one bucket per power of two nanoseconds.
+ *
+ * @author GraviteeSource Team
+ */
+public class LatencyHistogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param duration the duration, in nanoseconds.
+     */
+    public void record(long duration) {
+        if (duration < 0) {
+            duration = 0;
+        }
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(duration) - (duration == 0 ? 0 : 1));
+        count.increment();
+        sum.add(duration);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean duration, in nanoseconds.
+     */
+    public long mean() {
+        long count = count();
+        return (count == 0) ? 0 : sum.sum() / count;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket holding the given percentile, in nanoseconds.
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            total += buckets.get(i);
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return (i >= 62) ? Long.MAX_VALUE : (2L << i) - 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.render;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The time a mock render is allowed to take.
+ *
+ * A render still running when its budget expires is abandoned: the consumer is answered with the configured
+ * status, the worker running the render is interrupted and its response is discarded. After a given number
+ * of consecutive overruns, the circuit opens and requests are answered with the configured status without
+ * rendering anything, until the open duration is elapsed.
+ *
+ * An expression does not have to honor interruption, so an abandoned render may keep its worker: the circuit
+ * also stays open while as many abandoned renders as the failure threshold are still running, and a render
+ * rejected because all the workers are busy counts as an overrun.
+ *
+ * @author GraviteeSource Team
+ */
+public class RenderBudget {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderBudget.class);
+
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "gio-mock-budget");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final long timeout;
+    private final int status;
+    private final int failureThreshold;
+    private final long openDuration;
+
+    private final AtomicInteger overruns = new AtomicInteger();
+    private final AtomicInteger abandoned = new AtomicInteger();
+    private volatile long openUntil;
+
+    public RenderBudget(long timeout, int status, int failureThreshold, long openDuration) {
+        this.timeout = timeout;
+        this.status = status;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * @return the HTTP status used to answer a request whose render is over budget.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return <code>true</code> if the template has been over budget too many times in a row and must not be
+     * rendered for now.
+     */
+    public boolean isOpen() {
+        if (failureThreshold > 0 && abandoned.get() >= failureThreshold) {
+            return true;
+        }
+        return openUntil != 0 && System.currentTimeMillis() < openUntil;
+    }
+
+    /**
+     * @return the number of renders abandoned after their budget expired which are still holding a worker.
+     */
+    public int getAbandoned() {
+        return abandoned.get();
+    }
+
+    /**
+     * Start the budget of a render.
+     *
+     * @param onTimeout called from the timer thread if the budget expires before the render completes.
+     * @return the guard the render must go through before handing back its response.
+     */
+    public Guard start(Runnable onTimeout) {
+        Guard guard = new Guard();
+        guard.timer = TIMER.schedule(() -> {
+            if (guard.settled.compareAndSet(false, true)) {
+                guard.expired = true;
+                overrun();
+                guard.abandon();
+                guard.cancel();
+                onTimeout.run();
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        return guard;
+    }
+
+    private void overrun() {
+        int count = overruns.incrementAndGet();
+        if (failureThreshold > 0 && count >= failureThreshold) {
+            openUntil = System.currentTimeMillis() + openDuration;
+            LOGGER.warn("Mock template exceeded its {} ms render budget {} times in a row, renders are rejected for {} ms",
+                    timeout, count, openDuration);
+        }
+    }
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+    private static final int DONE = 3;
+
+    public final class Guard {
+
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private volatile boolean expired;
+        private volatile ScheduledFuture<?> timer;
+        private volatile Future<?> render;
+
+        private Guard() {
+        }
+
+        /**
+         * Wrap the render task, so that a render whose budget expired before it started is not run at all, and a
+         * render still running after its budget expired is accounted until it actually returns.
+         */
+        public Runnable wrap(Runnable task) {
+            return () -> {
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    if (state.getAndSet(DONE) == ABANDONED) {
+                        abandoned.decrementAndGet();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Attach the running render, so it can be interrupted when the budget expires.
+         */
+        public void watch(Future<?> render) {
+            this.render = render;
+            if (expired) {
+                cancel();
+            }
+        }
+
+        /**
+         * Mark the render as completed within its budget.
+         *
+         * @return <code>false</code> if the budget already expired, in which case the response must be discarded.
+         */
+        public boolean complete() {
+            if (!settled.compareAndSet(false, true)) {
+                return false;
+            }
+
+            ScheduledFuture<?> timer = this.timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            overruns.set(0);
+            return true;
+        }
+
+        /**
+         * Mark the render as rejected, because the worker pool is saturated.
+         *
+         * @return <code>false</code> if the budget already expired, in which case the consumer has been answered.
+         */
+        public boolean reject() {
+            if (!settled.compareAndSet(false, true)) {
+                return false;
+            }
+
+            ScheduledFuture<?> timer = this.timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            overrun();
+            return true;
+        }
+
+        private void abandon() {
+            if (state.compareAndSet(QUEUED, DONE)) {
+                return;
+            }
+
+            abandoned.incrementAndGet();
+            if (!state.compareAndSet(RUNNING, ABANDONED)) {
+                abandoned.decrementAndGet();
+            }
+        }
+
+        private void cancel() {
+            Future<?> render = this.render;
+            if (render != null) {
+                render.cancel(true);
+            }
+        }
+    }
+}
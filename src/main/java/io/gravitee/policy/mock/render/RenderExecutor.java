@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.render;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run expensive mock renders on a bounded worker pool instead of the gateway I/O thread.
+ *
+ * A render is offloaded when the template is larger than a given size, or when the average measured
+ * render time of the template goes over a given duration. Worker threads are stopped when idle, so an
+ * undeployed mock does not keep any thread alive.
+ *
+ * @author GraviteeSource Team
+ */
+public class RenderExecutor {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final boolean offloadBySize;
+    private final long renderTimeThreshold;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Exponentially weighted moving average of the render time, in nanoseconds.
+     * Updates may race, which only makes the average a little less accurate.
+     */
+    private volatile long averageRenderTime;
+
+    public RenderExecutor(int templateSize, int templateSizeThreshold, long renderTimeThreshold, TimeUnit unit,
+                          int poolSize, int queueSize) {
+        this.offloadBySize = templateSizeThreshold > 0 && templateSize >= templateSizeThreshold;
+        this.renderTimeThreshold = unit.toNanos(renderTimeThreshold);
+
+        int threads = (poolSize > 0) ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), new RenderThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Record the duration of a render.
+     *
+     * @param renderTime the render time, in nanoseconds.
+     */
+    public void record(long renderTime) {
+        long average = averageRenderTime;
+        averageRenderTime = average + ((renderTime - average) >> 3);
+    }
+
+    /**
+     * Run the given render task on the worker pool if the template is considered as expensive.
+     *
+     * @return <code>false</code> if the task has not been offloaded, because the template is cheap to render or
+     * the worker pool is saturated, in which case it is up to the caller to run it.
+     */
+    public boolean offload(Runnable task) {
+        if (!offloadBySize && (renderTimeThreshold <= 0 || averageRenderTime < renderTimeThreshold)) {
+            return false;
+        }
+
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException ree) {
+            return false;
+        }
+    }
+
+    /**
+     * Run the given render task on the worker pool, whatever the cost of the template.
+     *
+     * @return the pending task, or <code>null</code> if the worker pool is saturated, in which case it is up to the
+     * caller to run it.
+     */
+    public Future<?> submit(Runnable task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException ree) {
+            return null;
+        }
+    }
+
+    private static class RenderThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "gio-mock-render-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
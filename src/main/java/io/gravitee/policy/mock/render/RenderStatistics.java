@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.render;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The render timings of a mock policy, and the detection of renders blocking their thread for too long.
+ * <p>
+ * The timings are recorded, since the policy was deployed, into per-phase histograms which are logged at debug level
+ * at most once a minute.
+ *
+ * @author GraviteeSource Team
+ */
+public class RenderStatistics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderStatistics.class);
+
+    static final long REPORT_INTERVAL = 60;
+
+    private final Map<RenderTimings.Phase, LatencyHistogram> phases = new EnumMap<>(RenderTimings.Phase.class);
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final long blockedThreshold;
+    private final AtomicLong nextReport = new AtomicLong(System.nanoTime() + TimeUnit.SECONDS.toNanos(REPORT_INTERVAL));
+
+    /**
+     * @param blockedThreshold the render time from which a warning is logged, 0 to never log.
+     */
+    public RenderStatistics(long blockedThreshold, TimeUnit unit) {
+        this.blockedThreshold = unit.toNanos(blockedThreshold);
+        for (RenderTimings.Phase phase : RenderTimings.Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public void record(RenderTimings timings) {
+        for (RenderTimings.Phase phase : RenderTimings.Phase.values()) {
+            phases.get(phase).record(timings.get(phase));
+        }
+
+        long render = timings.render();
+        total.record(render);
+
+        if (blockedThreshold > 0 && render >= blockedThreshold) {
+            LOGGER.warn("Mock render blocked its thread for {} ms (headers: {} ms, content: {} ms, content type: {} ms)",
+                    millis(render), millis(timings.get(RenderTimings.Phase.HEADERS)),
+                    millis(timings.get(RenderTimings.Phase.CONTENT)),
+                    millis(timings.get(RenderTimings.Phase.CONTENT_TYPE)));
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            long now = System.nanoTime();
+            long next = nextReport.get();
+            // Only the render winning the race reports
+            if (now - next >= 0 && nextReport.compareAndSet(next, now + TimeUnit.SECONDS.toNanos(REPORT_INTERVAL))) {
+                LOGGER.debug(report());
+            }
+        }
+    }
+
+    public LatencyHistogram getHistogram(RenderTimings.Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * @return the histogram of the time spent rendering responses, request body buffering excluded.
+     */
+    public LatencyHistogram getTotalHistogram() {
+        return total;
+    }
+
+    /**
+     * @return a summary of the histograms, durations in milliseconds.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder("Mock render timings over ").append(total.count()).append(" renders: ");
+        append(sb, RenderTimings.ATTR_TOTAL, total);
+        for (RenderTimings.Phase phase : RenderTimings.Phase.values()) {
+            append(sb.append(", "), phase.attribute(), phases.get(phase));
+        }
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String name, LatencyHistogram histogram) {
+        sb.append(name)
+                .append(" [mean: ").append(millis(histogram.mean()))
+                .append(", p50: ").append(millis(histogram.percentile(50)))
+                .append(", p99: ").append(millis(histogram.percentile(99)))
+                .append(']');
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.render;
+
+/**
+ * The time spent by a request in each phase of a mock render.
+ *
+ * Timings are meant to be used by a single thread at a time. The {@link #DISABLED} instance does not call
+ * the clock at all, so disabled timings cost nothing.
+ *
+ * @author GraviteeSource Team
+ */
+public class RenderTimings {
+
+    public static final RenderTimings DISABLED = new RenderTimings() {
+        @Override
+        public long start() {
+            return 0L;
+        }
+
+        @Override
+        public long lap(Phase phase, long start) {
+            return 0L;
+        }
+    };
+
+    public enum Phase {
+        HEADERS("headers"),
+        BUFFERING("buffering"),
+        CONTENT("content"),
+        CONTENT_TYPE("contentType");
+
+        private final String attribute;
+
+        Phase(String attribute) {
+            this.attribute = attribute;
+        }
+
+        /**
+         * @return the name of the execution context attribute holding the time spent in this phase, in nanoseconds.
+         */
+        public String attribute() {
+            return ATTR_PREFIX + attribute;
+        }
+    }
+
+    public static final String ATTR_PREFIX = "mock.timing.";
+
+    /**
+     * The name of the execution context attribute holding the total render time, in nanoseconds.
+     */
+    public static final String ATTR_TOTAL = ATTR_PREFIX + "total";
+
+    private final long[] times = new long[Phase.values().length];
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Add the time elapsed since <code>start</code> to the given phase.
+     *
+     * @return the current time, to be used as the start of the next phase.
+     */
+    public long lap(Phase phase, long start) {
+        long now = System.nanoTime();
+        times[phase.ordinal()] += now - start;
+        return now;
+    }
+
+    public long get(Phase phase) {
+        return times[phase.ordinal()];
+    }
+
+    /**
+     * @return the time spent rendering the response, that is in every phase but the buffering of the request body.
+     */
+    public long render() {
+        return get(Phase.HEADERS) + get(Phase.CONTENT) + get(Phase.CONTENT_TYPE);
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.utils;
+
+import io.gravitee.policy.mock.configuration.ResponseCookie;
+import io.gravitee.policy.mock.json.Cookie;
+
+import java.util.Map;
+
+/**
+ * Serialize a {@link ResponseCookie} definition into a <code>Set-Cookie</code> header value, and parse the
+ * <code>Cookie</code> header of a request.
+ *
+ * Cookie names and values are written and read as they are (RFC 6265): they are not percent-escaped, so that values
+ * such as Base64 session identifiers round-trip unchanged.
+ *
+ * @author GraviteeSource Team
+ */
+public class CookieUtils {
+
+    private static final String SEPARATORS = "()<>@,;:\\\"/[]?={} \t";
+
+    /**
+     * @return <code>true</code> if the value of the cookie is an expression to evaluate for each request.
+     */
+    public static boolean isDynamic(ResponseCookie cookie) {
+        return cookie.getValue() != null && cookie.getValue().indexOf('{') >= 0;
+    }
+
+    /**
+     * @param cookie the cookie definition.
+     * @param value the value of the cookie, already evaluated if dynamic.
+     * @return the <code>Set-Cookie</code> header value.
+     * @throws IllegalArgumentException if the name is not a token, or the value is not made of cookie-octets.
+     */
+    public static String toSetCookie(ResponseCookie cookie, String value) {
+        String name = cookie.getName();
+        if (!isToken(name)) {
+            throw new IllegalArgumentException("Invalid cookie name: " + name);
+        }
+        if (value == null) {
+            value = "";
+        }
+        if (!isCookieValue(value)) {
+            throw new IllegalArgumentException("Invalid value for cookie " + name);
+        }
+
+        StringBuilder sb = new StringBuilder(name).append('=').append(value);
+        if (cookie.getExpires() != null) {
+            sb.append(";expires=").append(cookie.getExpires());
+        }
+        if (cookie.getDomain() != null) {
+            sb.append(";domain=").append(Cookie.escape(cookie.getDomain()));
+        }
+        if (cookie.getPath() != null) {
+            sb.append(";path=").append(Cookie.escape(cookie.getPath()));
+        }
+        if (cookie.isSecure()) {
+            sb.append(";secure");
+        }
+        if (cookie.getMaxAge() != null) {
+            sb.append(";Max-Age=").append(cookie.getMaxAge());
+        }
+        if (cookie.isHttpOnly()) {
+            sb.append(";HttpOnly");
+        }
+        if (cookie.getSameSite() != null && !cookie.getSameSite().isEmpty()) {
+            sb.append(";SameSite=").append(cookie.getSameSite());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parse the value of a <code>Cookie</code> request header, <code>name=value</code> pairs separated by
+     * <code>;</code>. A cookie already in the given map is not overridden.
+     *
+     * @param header the header value.
+     * @param cookies the map to add the cookies to.
+     */
+    public static void parseCookies(String header, Map<String, String> cookies) {
+        int length = header.length();
+        int start = 0;
+        while (start < length) {
+            int end = header.indexOf(';', start);
+            if (end < 0) {
+                end = length;
+            }
+            int equals = header.indexOf('=', start);
+            if (equals > start && equals < end) {
+                String name = header.substring(start, equals).trim();
+                if (!name.isEmpty()) {
+                    cookies.putIfAbsent(name, header.substring(equals + 1, end).trim());
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the given value is a <code>cookie-value</code>: cookie-octets, possibly
+     * enclosed in double quotes.
+     */
+    static boolean isCookieValue(String value) {
+        int start = 0;
+        int end = value.length();
+        if (end >= 2 && value.charAt(0) == '"' && value.charAt(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c <= 0x20 || c >= 0x7F || c == '"' || c == ',' || c == ';' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isToken(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c <= 0x20 || c >= 0x7F || SEPARATORS.indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
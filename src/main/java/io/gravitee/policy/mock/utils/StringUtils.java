@@ -18,6 +18,7 @@ package io.gravitee.policy.mock.utils;
 import io.gravitee.policy.mock.json.JSONArray;
 import io.gravitee.policy.mock.json.JSONException;
 import io.gravitee.policy.mock.json.JSONObject;
+import io.gravitee.policy.mock.json.JSONTokener;
 import org.w3c.dom.Document;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -30,14 +31,20 @@ import javax.xml.parsers.DocumentBuilderFactory;
 public class StringUtils {
 
     public static boolean isJSON(String content) {
+        // The first character tells whether to parse an object or an array, the content is only parsed once
+        JSONTokener tokener = new JSONTokener(content);
         try {
-            new JSONObject(content);
-        } catch (JSONException ex) {
-            try {
-                new JSONArray(content);
-            } catch (JSONException ex1) {
+            char first = tokener.nextClean();
+            tokener.back();
+            if (first == '{') {
+                new JSONObject(tokener);
+            } else if (first == '[') {
+                new JSONArray(tokener);
+            } else {
                 return false;
             }
+        } catch (JSONException ex) {
+            return false;
         }
 
         return true;
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.body;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RequestInflaterTest {
+
+    private static final byte[] BODY = body();
+
+    @Test
+    public void shouldInflateGzipWhateverTheChunkSize() throws Exception {
+        byte[] gzip = gzip(BODY);
+        for (int chunkSize : new int[] {1, 3, 11, 512, gzip.length}) {
+            assertEquals("chunk size " + chunkSize, new String(BODY, StandardCharsets.UTF_8),
+                    new String(inflate("gzip", gzip, chunkSize), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void shouldInflateDeflate() throws Exception {
+        assertTrue(Arrays.equals(BODY, inflate("deflate", deflate(BODY), 100)));
+    }
+
+    @Test
+    public void shouldAcceptEmptyBody() throws Exception {
+        assertEquals(0, inflate("gzip", new byte[0], 1).length);
+    }
+
+    @Test
+    public void shouldRejectTruncatedGzip() throws Exception {
+        byte[] gzip = gzip(BODY);
+        assertRejected("gzip", Arrays.copyOf(gzip, gzip.length / 2));
+    }
+
+    @Test
+    public void shouldRejectMissingGzipTrailer() throws Exception {
+        byte[] gzip = gzip(BODY);
+        assertRejected("gzip", Arrays.copyOf(gzip, gzip.length - 4));
+    }
+
+    @Test
+    public void shouldRejectGzipCrcMismatch() throws Exception {
+        byte[] gzip = gzip(BODY);
+        gzip[gzip.length - 8] ^= 1;
+        assertRejected("gzip", gzip);
+    }
+
+    @Test
+    public void shouldRejectGzipSizeMismatch() throws Exception {
+        byte[] gzip = gzip(BODY);
+        gzip[gzip.length - 1] ^= 1;
+        assertRejected("gzip", gzip);
+    }
+
+    @Test
+    public void shouldRejectTruncatedDeflate() throws Exception {
+        byte[] deflate = deflate(BODY);
+        assertRejected("deflate", Arrays.copyOf(deflate, deflate.length - 2));
+    }
+
+    @Test
+    public void shouldRejectDecompressionBomb() throws Exception {
+        RequestInflater inflater = RequestInflater.of("gzip", 10);
+        try {
+            inflater.inflate(gzip(new byte[1024 * 1024]), (bytes, offset, length) -> { });
+            fail("The body is expected to be rejected");
+        } catch (RequestInflater.InflateException ie) {
+            assertTrue(ie.isTooLarge());
+        }
+    }
+
+    private static void assertRejected(String encoding, byte[] encoded) throws Exception {
+        try {
+            inflate(encoding, encoded, 7);
+            fail("The body is expected to be rejected");
+        } catch (RequestInflater.InflateException ie) {
+            assertFalse(ie.isTooLarge());
+        }
+    }
+
+    private static byte[] inflate(String encoding, byte[] encoded, int chunkSize) throws Exception {
+        RequestInflater inflater = RequestInflater.of(encoding, 0);
+        BodyBytes inflated = new BodyBytes();
+        for (int i = 0; i < encoded.length; i += chunkSize) {
+            inflater.inflate(Arrays.copyOfRange(encoded, i, Math.min(encoded.length, i + chunkSize)), inflated);
+        }
+        inflater.finish();
+        return inflated.toByteArray();
+    }
+
+    private static byte[] body() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"é").append(i * 31).append("\"}\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out)) {
+            deflate.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
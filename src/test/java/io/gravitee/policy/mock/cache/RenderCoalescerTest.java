@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.cache;
+
+import io.gravitee.common.http.HttpHeaders;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RenderCoalescerTest {
+
+    private static final CacheKey KEY = new CacheKey(new Object[] {"key"});
+
+    @Test
+    public void shouldShareInFlightRender() throws Exception {
+        RenderCoalescer coalescer = new RenderCoalescer();
+        CachedResponse response = new CachedResponse(200, new HttpHeaders(), null);
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger renders = new AtomicInteger();
+        AtomicReference<CompletableFuture<CachedResponse>> first = new AtomicReference<>();
+
+        Thread renderer = new Thread(() -> first.set(coalescer.render(KEY, () -> {
+            renders.incrementAndGet();
+            rendering.countDown();
+            await(release);
+            return response;
+        })));
+        renderer.start();
+        assertTrue(rendering.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<CachedResponse> waiter = coalescer.render(KEY, () -> {
+            renders.incrementAndGet();
+            return null;
+        });
+        assertFalse(waiter.isDone());
+
+        release.countDown();
+        renderer.join();
+
+        assertEquals(1, renders.get());
+        assertSame(response, waiter.get(5, TimeUnit.SECONDS));
+        assertSame(response, first.get().get());
+    }
+
+    @Test
+    public void shouldFanOutFailure() throws Exception {
+        RenderCoalescer coalescer = new RenderCoalescer();
+        IllegalStateException failure = new IllegalStateException("render failed");
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<CompletableFuture<CachedResponse>> first = new AtomicReference<>();
+
+        Thread renderer = new Thread(() -> first.set(coalescer.render(KEY, () -> {
+            rendering.countDown();
+            await(release);
+            throw failure;
+        })));
+        renderer.start();
+        assertTrue(rendering.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<CachedResponse> waiter = coalescer.render(KEY, () -> null);
+        release.countDown();
+        renderer.join();
+
+        assertFailedWith(failure, first.get());
+        assertFailedWith(failure, waiter);
+    }
+
+    @Test
+    public void shouldRenderAgainOnceCompleted() throws Exception {
+        RenderCoalescer coalescer = new RenderCoalescer();
+
+        CachedResponse first = coalescer.render(KEY, () -> new CachedResponse(200, new HttpHeaders(), null)).get();
+        CachedResponse second = coalescer.render(KEY, () -> new CachedResponse(200, new HttpHeaders(), null)).get();
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void shouldRenderAgainOnceFailed() throws Exception {
+        RenderCoalescer coalescer = new RenderCoalescer();
+        coalescer.render(KEY, () -> {
+            throw new IllegalStateException();
+        });
+
+        CachedResponse response = new CachedResponse(200, new HttpHeaders(), null);
+        assertSame(response, coalescer.render(KEY, () -> response).get());
+    }
+
+    private static void assertFailedWith(Throwable expected, CompletableFuture<CachedResponse> future)
+            throws InterruptedException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("The render should have failed");
+        } catch (ExecutionException e) {
+            assertSame(expected, e.getCause());
+        } catch (TimeoutException e) {
+            fail("The render should have completed");
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.cache;
+
+import io.gravitee.common.http.HttpHeaders;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class ResponseCacheTest {
+
+    private static final CachedResponse RESPONSE = new CachedResponse(200, new HttpHeaders(), null);
+
+    @Test
+    public void shouldStoreUntilFull() {
+        ResponseCache cache = new ResponseCache(2);
+        cache.put(key("a"), RESPONSE);
+        cache.put(key("b"), RESPONSE);
+
+        assertSame(RESPONSE, cache.get(key("a")));
+        assertSame(RESPONSE, cache.get(key("b")));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void shouldAdmitMoreFrequentKeyAndEvictOldest() {
+        ResponseCache cache = new ResponseCache(2);
+        cache.put(key("a"), RESPONSE);
+        cache.put(key("b"), RESPONSE);
+        for (int i = 0; i < 3; i++) {
+            cache.get(key("c"));
+        }
+
+        cache.put(key("c"), RESPONSE);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(key("a")));
+        assertNotNull(cache.get(key("b")));
+        assertNotNull(cache.get(key("c")));
+    }
+
+    @Test
+    public void shouldRejectLessFrequentKey() {
+        ResponseCache cache = new ResponseCache(2);
+        cache.put(key("a"), RESPONSE);
+        cache.put(key("b"), RESPONSE);
+        cache.get(key("a"));
+        cache.get(key("b"));
+
+        cache.put(key("once"), RESPONSE);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(key("once")));
+        assertNotNull(cache.get(key("a")));
+        assertNotNull(cache.get(key("b")));
+    }
+
+    @Test
+    public void shouldReplaceExistingKeyWhenFull() {
+        ResponseCache cache = new ResponseCache(1);
+        CachedResponse replacement = new CachedResponse(201, new HttpHeaders(), null);
+        cache.put(key("a"), RESPONSE);
+
+        cache.put(key("a"), replacement);
+
+        assertEquals(1, cache.size());
+        assertSame(replacement, cache.get(key("a")));
+    }
+
+    @Test
+    public void shouldNotExceedMaximumSizeUnderConcurrentPuts() throws Exception {
+        final int maximumSize = 4;
+        for (int round = 0; round < 50; round++) {
+            final ResponseCache cache = new ResponseCache(maximumSize);
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger largest = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 2_000; i++) {
+                        CacheKey key = key(thread + "-" + (i % 64));
+                        cache.get(key);
+                        cache.put(key, RESPONSE);
+                        largest.accumulateAndGet(cache.size(), Math::max);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertTrue("largest size was " + largest.get(), largest.get() <= maximumSize);
+        }
+    }
+
+    private static CacheKey key(String value) {
+        return new CacheKey(new Object[] {value});
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CompactMapTest {
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void shouldFailWhenPromotedDuringIteration() {
+        CompactMap map = filled(CompactMap.THRESHOLD);
+        Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
+        iterator.next();
+
+        map.put("promoted", 0);
+
+        iterator.hasNext();
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void shouldFailWhenClearedDuringIteration() {
+        CompactMap map = filled(3);
+        Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
+        iterator.next();
+
+        map.clear();
+
+        iterator.hasNext();
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void shouldFailOnEntryHeldAcrossPromotion() {
+        CompactMap map = filled(CompactMap.THRESHOLD);
+        Map.Entry<String, Object> entry = map.entrySet().iterator().next();
+
+        map.put("promoted", 0);
+
+        entry.getKey();
+    }
+
+    @Test
+    public void shouldUpdateValueThroughEntry() {
+        CompactMap map = filled(3);
+        Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> entry = iterator.next();
+            entry.setValue(entry.getKey());
+        }
+
+        assertEquals("k1", map.get("k1"));
+    }
+
+    @Test
+    public void shouldRemoveThroughIterator() {
+        CompactMap map = filled(3);
+        Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    private static CompactMap filled(int size) {
+        CompactMap map = new CompactMap();
+        for (int i = 0; i < size; i++) {
+            map.put("k" + i, i);
+        }
+        return map;
+    }
+}
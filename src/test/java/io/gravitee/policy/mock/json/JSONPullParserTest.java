@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The events of a JSONPullParser, rebuilt as a tree, against the tree read by
+ * the JSONObject and JSONArray constructors: same value or same syntax error.
+ *
+ * @author GraviteeSource Team
+ */
+public class JSONPullParserTest {
+
+    private static final String[] TEXTS = {
+            "{}",
+            "[]",
+            "{\"a\":1,\"b\":[true,null,\"x\"],\"c\":{\"d\":-1.5}}",
+            "{\"a\":1;\"b\":2}",
+            "{\"a\":1,}",
+            "[1,2,]",
+            "[1,,2]",
+            "[,]",
+            "{a:b}",
+            "{",
+            "[",
+            "{\"a\"",
+            "{\"a\":",
+            "{\"a\":1",
+            "{\"a\":1,",
+            "{\"a\":1;",
+            "{\"a\":1,   ",
+            "{\"a\":{\"b\":1,",
+            "[1",
+            "[1,",
+            "[{\"a\":1,",
+            "{\"a\" 1}",
+            "{\"a\":1 \"b\":2}",
+            "[1 2]",
+            "{\"a\":1,\"a\":2}",
+    };
+
+    @Test
+    public void shouldReadAsTheTreeConstructors() {
+        for (String text : TEXTS) {
+            assertEquals(text, tree(text), pulled(text));
+        }
+    }
+
+    private static String tree(String text) {
+        try {
+            JSONTokener x = new JSONTokener(text);
+            Object value = text.startsWith("[") ? new JSONArray(x) : new JSONObject(x);
+            return value.toString();
+        } catch (JSONException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static String pulled(String text) {
+        try {
+            JSONPullParser parser = new JSONPullParser(new JSONTokener(text));
+            Deque<Object> open = new ArrayDeque<Object>();
+            Object root = null;
+            String key = null;
+            while (parser.hasNext()) {
+                Object value = null;
+                switch (parser.next()) {
+                case START_OBJECT:
+                    value = new JSONObject();
+                    break;
+                case START_ARRAY:
+                    value = new JSONArray();
+                    break;
+                case KEY:
+                    key = parser.getKey();
+                    continue;
+                case VALUE:
+                    value = parser.getValue();
+                    break;
+                default:
+                    open.pop();
+                    continue;
+                }
+                if (open.isEmpty()) {
+                    root = value;
+                } else if (open.peek() instanceof JSONObject) {
+                    ((JSONObject) open.peek()).putOnce(key, value);
+                } else {
+                    ((JSONArray) open.peek()).put(value);
+                }
+                if (value instanceof JSONObject || value instanceof JSONArray) {
+                    open.push(value);
+                }
+            }
+            return root.toString();
+        } catch (JSONException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * The position reported by JSON syntax errors, which is the same whether the text is read from a String, a char
+ * array or a Reader.
+ *
+ * @author GraviteeSource Team
+ */
+public class JSONTokenerTest {
+
+    @Test
+    public void shouldNotCountGivenBackLineBreakTwice() {
+        assertSyntaxError("{\"a\":1\n,\n\"b\" 2}", "Expected a ':' after a key at 14 [character 5 line 3]");
+    }
+
+    @Test
+    public void shouldCountCarriageReturnLineBreakOnce() {
+        assertSyntaxError("{\"a\":1\r\n,\r\n\"b\" 2}", "Expected a ':' after a key at 16 [character 5 line 3]");
+        assertSyntaxError("{\"a\":1\r,\r\"b\" 2}", "Expected a ':' after a key at 14 [character 5 line 3]");
+    }
+
+    @Test
+    public void shouldReportPositionInLine() {
+        assertSyntaxError("[1, 2", "Expected a ',' or ']' at 6 [character 7 line 1]");
+        assertSyntaxError("{\"a\" 1}", "Expected a ':' after a key at 6 [character 7 line 1]");
+    }
+
+    private static void assertSyntaxError(String json, String message) {
+        assertEquals(message, syntaxError(new JSONTokener(json)));
+        assertEquals(message, syntaxError(new JSONTokener(json.toCharArray())));
+        assertEquals(message, syntaxError(new JSONTokener(new StringReader(json))));
+    }
+
+    private static String syntaxError(JSONTokener tokener) {
+        try {
+            tokener.nextValue();
+            fail("A syntax error is expected");
+            return null;
+        } catch (JSONException jsonEx) {
+            return jsonEx.getMessage();
+        }
+    }
+}
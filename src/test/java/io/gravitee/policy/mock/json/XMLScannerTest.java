@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * The position reported by XML syntax errors: the offset of the offending character, never past the end of the
+ * text, its column and its line, a CRLF, CR or LF line break counting as a single line.
+ *
+ * @author GraviteeSource Team
+ */
+public class XMLScannerTest {
+
+    @Test
+    public void shouldReportEndOfTextPosition() {
+        assertSyntaxError("<a x=1>", "Unclosed tag a at 7 [character 8 line 1]");
+        assertSyntaxError("<a", "Misshaped element at 2 [character 3 line 1]");
+    }
+
+    @Test
+    public void shouldReportPositionInLine() {
+        assertSyntaxError("<a></b>", "Mismatched a and b at 6 [character 7 line 1]");
+        assertSyntaxError("<a x='1></a>", "Unterminated string at 12 [character 13 line 1]");
+        assertSyntaxError("<a>&bogus</a>", "Missing ';' in XML entity: &bogus at 10 [character 11 line 1]");
+    }
+
+    @Test
+    public void shouldCountLineBreaksOnce() {
+        assertSyntaxError("<a>\n<b>\n</c>", "Mismatched b and c at 11 [character 4 line 3]");
+        assertSyntaxError("<a>\r<b>\r</c>", "Mismatched b and c at 11 [character 4 line 3]");
+        assertSyntaxError("<a>\r\n<b>\r\n</c>", "Mismatched b and c at 13 [character 4 line 3]");
+        assertSyntaxError("<c/>\r\n&x\n<b x='1'>", "Unclosed tag b at 18 [character 10 line 3]");
+    }
+
+    @Test
+    public void shouldReportSamePositionFromReader() {
+        try {
+            XML.toJSONObject(new StringReader("<a>\r\n<b>\r\n</c>"));
+            fail("A syntax error is expected");
+        } catch (JSONException jsonEx) {
+            assertEquals("Mismatched b and c at 13 [character 4 line 3]", jsonEx.getMessage());
+        }
+    }
+
+    private static void assertSyntaxError(String xml, String message) {
+        try {
+            XML.toJSONObject(xml);
+            fail("A syntax error is expected for " + xml);
+        } catch (JSONException jsonEx) {
+            assertEquals(message, jsonEx.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class XMLTest {
+
+    @Test(expected = JSONException.class)
+    public void shouldDetectObjectCycle() {
+        JSONObject object = new JSONObject();
+        object.put("self", object);
+
+        XML.toString(object);
+    }
+
+    @Test(expected = JSONException.class)
+    public void shouldDetectArrayCycle() {
+        JSONArray array = new JSONArray();
+        JSONObject object = new JSONObject().put("items", array);
+        array.put(object);
+
+        XML.toString(object, "root");
+    }
+
+    @Test
+    public void shouldWriteDeepDocument() {
+        JSONObject root = new JSONObject();
+        JSONObject current = root;
+        for (int i = 0; i < 2000; i++) {
+            JSONObject child = new JSONObject();
+            current.put("a", child);
+            current = child;
+        }
+        current.put("leaf", "value");
+
+        String xml = XML.toString(root);
+        assertTrue(xml.contains("<leaf>value</leaf>"));
+    }
+
+    @Test
+    public void shouldWriteSharedValueTwice() {
+        JSONObject shared = new JSONObject().put("b", 1);
+        JSONArray array = new JSONArray().put(shared).put(shared);
+
+        assertEquals("<a><b>1</b></a><a><b>1</b></a>", XML.toString(new JSONObject().put("a", array)));
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.render;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RenderBudgetTest {
+
+    @Test
+    public void shouldTimeOutRenderOverBudget() throws Exception {
+        RenderBudget budget = new RenderBudget(20, 504, 0, 0);
+        CountDownLatch timedOut = new CountDownLatch(1);
+
+        RenderBudget.Guard guard = budget.start(timedOut::countDown);
+
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+        assertFalse(guard.complete());
+        assertFalse(budget.isOpen());
+    }
+
+    @Test
+    public void shouldNotTimeOutCompletedRender() throws Exception {
+        RenderBudget budget = new RenderBudget(50, 504, 1, 60_000);
+        CountDownLatch timedOut = new CountDownLatch(1);
+
+        RenderBudget.Guard guard = budget.start(timedOut::countDown);
+
+        assertTrue(guard.complete());
+        assertFalse(timedOut.await(200, TimeUnit.MILLISECONDS));
+        assertFalse(guard.reject());
+        assertFalse(budget.isOpen());
+    }
+
+    @Test
+    public void shouldNotRunRenderWhoseBudgetExpired() throws Exception {
+        RenderBudget budget = new RenderBudget(20, 504, 0, 0);
+        CountDownLatch timedOut = new CountDownLatch(1);
+        boolean[] ran = {false};
+
+        RenderBudget.Guard guard = budget.start(timedOut::countDown);
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+        guard.wrap(() -> ran[0] = true).run();
+
+        assertFalse(ran[0]);
+        assertEquals(0, budget.getAbandoned());
+    }
+
+    @Test
+    public void shouldOpenCircuitAfterConsecutiveOverrunsThenClose() throws Exception {
+        RenderBudget budget = new RenderBudget(20, 503, 2, 300);
+
+        expire(budget);
+        assertFalse(budget.isOpen());
+        expire(budget);
+        assertTrue(budget.isOpen());
+
+        assertTrue(eventually(() -> !budget.isOpen()));
+    }
+
+    @Test
+    public void shouldResetOverrunsOnCompletion() throws Exception {
+        RenderBudget budget = new RenderBudget(20, 503, 2, 60_000);
+
+        expire(budget);
+        assertTrue(budget.start(() -> { }).complete());
+        expire(budget);
+
+        assertFalse(budget.isOpen());
+    }
+
+    @Test
+    public void shouldCountRejectionAsOverrun() {
+        RenderBudget budget = new RenderBudget(60_000, 503, 1, 60_000);
+
+        assertTrue(budget.start(() -> { }).reject());
+
+        assertTrue(budget.isOpen());
+    }
+
+    @Test
+    public void shouldStayOpenWhileAbandonedRenderRuns() throws Exception {
+        RenderBudget budget = new RenderBudget(20, 503, 1, 0);
+        CountDownLatch timedOut = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        RenderBudget.Guard guard = budget.start(timedOut::countDown);
+        Thread worker = new Thread(guard.wrap(() -> {
+            running.countDown();
+            // An expression ignoring interruption
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }));
+        worker.start();
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, budget.getAbandoned());
+        assertTrue(budget.isOpen());
+
+        release.countDown();
+        worker.join();
+
+        assertEquals(0, budget.getAbandoned());
+        assertFalse(budget.isOpen());
+    }
+
+    private static void expire(RenderBudget budget) throws InterruptedException {
+        CountDownLatch timedOut = new CountDownLatch(1);
+        budget.start(timedOut::countDown);
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.mock.utils;
+
+import io.gravitee.policy.mock.configuration.ResponseCookie;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CookieUtilsTest {
+
+    @Test
+    public void shouldWriteValueAsIs() {
+        ResponseCookie cookie = new ResponseCookie();
+        cookie.setName("sid");
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+
+        assertEquals("sid=YWI+Yw==;path=/;HttpOnly", CookieUtils.toSetCookie(cookie, "YWI+Yw=="));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectValueWithSeparator() {
+        ResponseCookie cookie = new ResponseCookie();
+        cookie.setName("sid");
+
+        CookieUtils.toSetCookie(cookie, "a;b");
+    }
+
+    @Test
+    public void shouldReadValueAsIs() {
+        Map<String, String> cookies = new LinkedHashMap<>();
+        CookieUtils.parseCookies("sid=ab+c==; other = %41 ;flag", cookies);
+
+        assertEquals(2, cookies.size());
+        assertEquals("ab+c==", cookies.get("sid"));
+        assertEquals("%41", cookies.get("other"));
+    }
+
+    @Test
+    public void shouldKeepFirstCookie() {
+        Map<String, String> cookies = new LinkedHashMap<>();
+        CookieUtils.parseCookies("sid=first; sid=second", cookies);
+
+        assertEquals("first", cookies.get("sid"));
+    }
+
+    @Test
+    public void shouldRoundTripBase64Value() {
+        ResponseCookie cookie = new ResponseCookie();
+        cookie.setName("sid");
+        Map<String, String> cookies = new LinkedHashMap<>();
+
+        String setCookie = CookieUtils.toSetCookie(cookie, "YWI+Yw==");
+        CookieUtils.parseCookies(setCookie, cookies);
+
+        assertEquals("YWI+Yw==", cookies.get("sid"));
+    }
+
+    @Test
+    public void shouldValidateCookieOctets() {
+        assertTrue(CookieUtils.isCookieValue("YWI+Yw=="));
+        assertTrue(CookieUtils.isCookieValue("\"quoted\""));
+        assertTrue(CookieUtils.isCookieValue(""));
+        assertFalse(CookieUtils.isCookieValue("a b"));
+        assertFalse(CookieUtils.isCookieValue("a,b"));
+        assertFalse(CookieUtils.isCookieValue("é"));
+    }
+}